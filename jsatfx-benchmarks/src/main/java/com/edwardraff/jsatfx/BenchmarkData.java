@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Random;
+import javafx.embed.swing.JFXPanel;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.DenseVector;
+import jsat.regression.RegressionDataSet;
+
+/**
+ * Shared setup for the benchmarks
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class BenchmarkData
+{
+    private static boolean toolkitStarted = false;
+    
+    /**
+     * Starts the JavaFX toolkit, which charts and shapes need to be created.
+     * Does nothing if it was already started.
+     */
+    public static synchronized void startToolkit()
+    {
+        if(toolkitStarted)
+            return;
+        new JFXPanel();
+        toolkitStarted = true;
+    }
+    
+    /**
+     * Creates a data set of Gaussian blobs, one for each class, spaced around
+     * the unit circle to match the {@link StandInClassifier}
+     * @param n the number of points
+     * @param classes the number of classes
+     * @param seed the seed for the random number generator
+     * @return a random 2D classification data set
+     */
+    public static ClassificationDataSet classification(int n, int classes, long seed)
+    {
+        Random rand = new Random(seed);
+        ClassificationDataSet d = new ClassificationDataSet(2, new CategoricalData[0], new CategoricalData(classes));
+        for(int i = 0; i < n; i++)
+        {
+            int k = i % classes;
+            double angle = 2*Math.PI*k/classes;
+            d.addDataPoint(DenseVector.toDenseVec(Math.cos(angle)+rand.nextGaussian()*0.4, Math.sin(angle)+rand.nextGaussian()*0.4), k);
+        }
+        return d;
+    }
+    
+    /**
+     * 
+     * @param n the number of points
+     * @param seed the seed for the random number generator
+     * @return noisy samples of a sine wave
+     */
+    public static RegressionDataSet regression(int n, long seed)
+    {
+        Random rand = new Random(seed);
+        RegressionDataSet d = new RegressionDataSet(1, new CategoricalData[0]);
+        for(int i = 0; i < n; i++)
+        {
+            double x = rand.nextDouble()*10-5;
+            d.addDataPoint(DenseVector.toDenseVec(x), Math.sin(x)+rand.nextGaussian()*0.2);
+        }
+        return d;
+    }
+}
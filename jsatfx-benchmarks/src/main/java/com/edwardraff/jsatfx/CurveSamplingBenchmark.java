@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost of sampling the curve drawn by {@link RegressionPlot}, for a smooth
+ * function with a jump in the middle. Runs without the JavaFX toolkit.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CurveSamplingBenchmark
+{
+    @Param({"400", "1600"})
+    public int width;
+    
+    /**
+     * The extra work per function call, 0 for a function as fast as possible
+     */
+    @Param({"0", "1000"})
+    public long cost;
+    
+    private SampledCurve.Evaluator function;
+    
+    @Setup
+    public void setup()
+    {
+        final long work = cost;
+        function = SampledCurve.Evaluator.of((double x) -> 
+        {
+            if(work > 0)
+                Blackhole.consumeCPU(work);
+            return Math.sin(x) + (x > 0 ? 1 : 0);
+        });
+    }
+    
+    @Benchmark
+    public SampledCurve adaptive()
+    {
+        return SampledCurve.adaptive(function, -5, 10.0/width, -3.0/400, width, ForkJoinPool.commonPool(), () -> false);
+    }
+}
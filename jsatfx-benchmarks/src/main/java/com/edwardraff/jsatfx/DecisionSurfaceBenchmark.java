@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the grid loop behind {@link ClassificationPlot}: evaluating a
+ * decision surface the size of a typical plot, and rendering it into pixels.
+ * Runs without the JavaFX toolkit.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecisionSurfaceBenchmark
+{
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    
+    @Param({"1", "2", "5", "10"})
+    public int resolution;
+    
+    @Param({"2", "5", "10"})
+    public int classes;
+    
+    /**
+     * The extra work per classifier call, 0 for a model as fast as possible
+     */
+    @Param({"0", "1000"})
+    public long cost;
+    
+    private BatchClassifier model;
+    private GridAxis xGrid;
+    private GridAxis yGrid;
+    private DecisionSurface computed;
+    private SurfaceRenderer renderer;
+    private int[] pixels;
+    
+    @Setup
+    public void setup()
+    {
+        model = BatchClassifier.of(new StandInClassifier(classes, cost));
+        xGrid = GridAxis.of(-2, 4.0/WIDTH, WIDTH, resolution);
+        yGrid = GridAxis.of(2, -4.0/HEIGHT, HEIGHT, resolution);
+        computed = compute();
+        renderer = new SurfaceRenderer(SurfaceRenderer.backgroundColors(classes), 0.8);
+        pixels = new int[WIDTH*HEIGHT];
+    }
+    
+    @Benchmark
+    public DecisionSurface compute()
+    {
+        DecisionSurface surface = new DecisionSurface(xGrid, yGrid, classes, 0);
+        surface.compute(model, ForkJoinPool.commonPool(), () -> false);
+        return surface;
+    }
+    
+    @Benchmark
+    public DecisionSurface computeProgressive()
+    {
+        DecisionSurface surface = new DecisionSurface(xGrid, yGrid, classes, 0);
+        surface.computeProgressive(model, ForkJoinPool.commonPool(), () -> false, 16, () -> {});
+        return surface;
+    }
+    
+    @Benchmark
+    public int[] renderSoft()
+    {
+        renderer.render(computed, pixels, WIDTH, HEIGHT, false);
+        return pixels;
+    }
+    
+    @Benchmark
+    public int[] renderHard()
+    {
+        renderer.render(computed, pixels, WIDTH, HEIGHT, true);
+        return pixels;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.TimeUnit;
+import javafx.scene.chart.ScatterChart;
+import jsat.classifiers.ClassificationDataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of building scatter plots with {@link Plot}. Above
+ * {@link Plot#getHighVolumeThreshold() } points the plots draw onto a canvas
+ * rather than creating a node per point.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlotConstructionBenchmark
+{
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int points;
+    
+    private ClassificationDataSet data;
+    
+    @Setup
+    public void setup()
+    {
+        BenchmarkData.startToolkit();
+        data = BenchmarkData.classification(points, 3, 42);
+    }
+    
+    @Benchmark
+    public ScatterChart<Number, Number> scatter()
+    {
+        return Plot.scatter(data);
+    }
+    
+    @Benchmark
+    public ScatterChart<Number, Number> scatterC()
+    {
+        return Plot.scatterC(data);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.ExecutorService;
+import jsat.classifiers.CategoricalResults;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.classifiers.DataPoint;
+import jsat.linear.Vec;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A classifier for benchmarks that needs no training and has a tunable cost
+ * per call. Each class has a center spaced evenly around the unit circle, and
+ * the probability of a class falls off with the distance from its center, so
+ * the decision boundaries are smooth curves that meet in the middle.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class StandInClassifier implements Classifier
+{
+    private static final long serialVersionUID = 3312043527781590224L;
+    private final int classes;
+    private final long cost;
+
+    /**
+     * 
+     * @param classes the number of classes to predict
+     * @param cost the amount of extra work done by every call, in
+     * {@link Blackhole#consumeCPU(long) } tokens
+     */
+    public StandInClassifier(int classes, long cost)
+    {
+        this.classes = classes;
+        this.cost = cost;
+    }
+
+    @Override
+    public CategoricalResults classify(DataPoint data)
+    {
+        if(cost > 0)
+            Blackhole.consumeCPU(cost);
+        Vec v = data.getNumericalValues();
+        double x = v.get(0), y = v.get(1);
+        CategoricalResults results = new CategoricalResults(classes);
+        double sum = 0;
+        double[] weights = new double[classes];
+        for(int k = 0; k < classes; k++)
+        {
+            double angle = 2*Math.PI*k/classes;
+            double dx = x-Math.cos(angle), dy = y-Math.sin(angle);
+            weights[k] = Math.exp(-4*(dx*dx+dy*dy));
+            sum += weights[k];
+        }
+        for(int k = 0; k < classes; k++)
+            results.setProb(k, weights[k]/sum);
+        return results;
+    }
+
+    @Override
+    public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
+    {
+    }
+
+    @Override
+    public void trainC(ClassificationDataSet dataSet)
+    {
+    }
+
+    @Override
+    public boolean supportsWeightedData()
+    {
+        return false;
+    }
+
+    @Override
+    public Classifier clone()
+    {
+        return new StandInClassifier(classes, cost);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import jsat.classifiers.Classifier;
+
+/**
+ * A BatchClassifier classifies many points at once, where the points are given
+ * as one buffer of primitive coordinates rather than as individual
+ * {@link jsat.classifiers.DataPoint DataPoints}. This is used when evaluating
+ * the grid of a decision surface, where creating a new vector, data point and
+ * result for every cell would dominate the cost for fast models. <br>
+ * Any {@link Classifier} can be evaluated in batches using {@link #of(jsat.classifiers.Classifier) },
+ * and a classifier that can classify many points more efficiently than one at
+ * a time may implement this interface directly to be used instead.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public interface BatchClassifier
+{
+    /**
+     * Classifies a batch of points. This method must be safe to call from
+     * multiple threads at the same time.
+     *
+     * @param coords the values of the points, where point {@code i} has its
+     * values stored in {@code coords[i*dimensions]} through
+     * {@code coords[(i+1)*dimensions-1]}
+     * @param dimensions the number of values for each point
+     * @param count the number of points to classify
+     * @param probs the array to store the results in, the probability of class
+     * {@code k} for point {@code i} is stored in {@code probs[i*classes+k]}
+     * @param classes the number of classes to store results for
+     */
+    public void classify(double[] coords, int dimensions, int count, double[] probs, int classes);
+
+    /**
+     * Returns a batch classifier for the given classifier. If the classifier
+     * already implements this interface it is returned as is, otherwise it is
+     * wrapped so that each batch re-uses a single vector and data point for
+     * all of its points.
+     *
+     * @param classifier the classifier to evaluate in batches
+     * @return a batch classifier backed by the given classifier
+     */
+    public static BatchClassifier of(Classifier classifier)
+    {
+        if(classifier instanceof BatchClassifier)
+            return (BatchClassifier) classifier;
+        return new ClassifierBatch(classifier);
+    }
+}
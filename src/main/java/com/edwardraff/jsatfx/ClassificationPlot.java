@@ -16,19 +16,40 @@
  */
 package com.edwardraff.jsatfx;
 
+import java.util.concurrent.ForkJoinPool;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.chart.Axis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.ScatterChart;
-import javafx.scene.paint.Color;
-import jsat.classifiers.CategoricalResults;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
 import jsat.classifiers.Classifier;
-import jsat.classifiers.DataPoint;
-import jsat.linear.DenseVector;
 import static java.lang.Math.*;
 
 /**
+ * A scatter chart that paints the decision surface of a classifier behind the
+ * data. The surface is evaluated in parallel on a background thread, so
+ * resizing the chart does not block the JavaFX Application Thread. While a new
+ * surface is being computed a "computing" overlay is shown, and any
+ * computation made stale by a later change of the axes or size is cancelled.
+ * <br>
+ * The last surface is cached, and is only computed again when the axes, the
+ * size of the plot, the resolution or the classifier changes. When the plot is
+ * panned, only the newly exposed cells are evaluated. If the classifier is
+ * re-trained in place, {@link #classifierChanged() } must be called for the
+ * change to be shown. <br>
+ * A classifier trained on more than two features can be shown with
+ * {@link #setSlice(int, int, double[]) }, which plots a slice through the
+ * feature space where every feature besides the two on the axes is held at
+ * the value of a reference point. <br>
+ * The plot can be zoomed with the mouse wheel and panned by dragging. While
+ * the surface for the new view is computed, a pan shows the cells already
+ * known shifted into place, and a zoom shows the last surface scaled to fit.
  *
  * @author Edward Raff <Raff.Edward@gmail.com>
  * @param <X>
@@ -36,20 +57,149 @@ import static java.lang.Math.*;
  */
 public class ClassificationPlot<X extends Number, Y extends Number> extends ScatterChart<X, Y>
 {
+    /**
+     * The size, in pixels, of the coarsest blocks drawn in progressive mode
+     */
+    private static final int PROGRESSIVE_START = 16;
+    
     private boolean hard = false;
     private int resolution = 5;
     private double backgroundOpacity = 0.8;
+    private boolean progressive = false;
+    private boolean adaptive = false;
+    private int maxModelCalls = Integer.MAX_VALUE;
+    /**
+     * The reference point of the slice shown, or {@code null} if the
+     * classifier works on only the two plotted features
+     */
+    private double[] sliceTemplate;
+    /**
+     * The features plotted on the x and y axis when showing a slice
+     */
+    private int[] sliceFeatures;
 
     private Canvas canvas;
+    private PointLayer points;
+    /**
+     * Picks from the {@link #points}, and draws the hovered and selected ones
+     */
+    private PointPicker picker;
     private Classifier classifier;
+    private final Label computingLabel;
+    private final PlotMetrics metrics = new PlotMetrics();
+    /**
+     * Shows the {@link #metrics} over the plot, created when first shown
+     */
+    private Label metricsLabel;
+    /**
+     * Incremented every time the classifier changes, so that cached surfaces
+     * of an older classifier are not reused
+     */
+    private long classifierVersion = 0;
+    /**
+     * The task computing the current surface, or {@code null} if none is
+     */
+    private Task<DecisionSurface> pending;
+    /**
+     * The most recently requested surface, which may still be computing
+     */
+    private DecisionSurface surface;
+    /**
+     * The most recent surface known to be finished, whose cells can be
+     * reused. While panning faster than surfaces are computed, this keeps
+     * cells from being lost along a chain of cancelled surfaces.
+     */
+    private DecisionSurface reusable;
+    /**
+     * The surface currently painted on the canvas
+     */
+    private DecisionSurface painted;
+    /**
+     * Whether {@link #painted} was painted with hard boundaries
+     */
+    private boolean paintedHard;
+    /**
+     * The image the surface is rendered into, re-used until the size of the
+     * canvas changes
+     */
+    private WritableImage image;
+    /**
+     * The surface whose pixels are in the {@link #image}, which may be a
+     * progressive pass of a surface that is not {@link #painted} yet. Its
+     * grids place the image when the view moves.
+     */
+    private DecisionSurface imageSurface;
+    /**
+     * The buffer completed surfaces are rendered into
+     */
+    private int[] pixels;
+    private SurfaceRenderer renderer;
+    private int rendererClasses;
+    private final PanZoom panZoom;
 
     public ClassificationPlot(Axis<X> xAxis, Axis<Y> yAxis, Classifier classifier)
     {
         super(xAxis, yAxis);
         canvas = new Canvas(7, 7);
+        computingLabel = new Label("Computing\u2026");
+        computingLabel.setStyle("-fx-background-color: rgba(255, 255, 255, 0.7); -fx-padding: 2 6 2 6;");
+        computingLabel.setVisible(false);
         
-        getPlotChildren().add(canvas);
+        getPlotChildren().addAll(canvas, computingLabel);
         this.classifier = classifier;
+        panZoom = PanZoom.install(this);
+        
+        addEventHandler(MouseEvent.ANY, (MouseEvent e) ->
+        {
+            if(picker != null)
+                picker.handle(e);
+        });
+    }
+    
+    /**
+     * 
+     * @return the counters of where the time of this plot goes
+     */
+    public PlotMetrics getMetrics()
+    {
+        return metrics;
+    }
+    
+    /**
+     * 
+     * @param show {@code true} to show a summary of the {@link #getMetrics() 
+     * metrics} in the corner of the plot
+     */
+    public void setShowMetrics(boolean show)
+    {
+        if(show && metricsLabel == null)
+        {
+            metricsLabel = metrics.createOverlay();
+            getPlotChildren().add(metricsLabel);
+        }
+        if(metricsLabel != null)
+            metricsLabel.setVisible(show);
+        requestChartLayout();
+    }
+    
+    public boolean isShowMetrics()
+    {
+        return metricsLabel != null && metricsLabel.isVisible();
+    }
+    
+    /**
+     * 
+     * @param enabled {@code true} to zoom with the mouse wheel and pan by
+     * dragging, which requires both axes to be {@link NumberAxis number axes}
+     */
+    public void setPanZoomEnabled(boolean enabled)
+    {
+        panZoom.setEnabled(enabled);
+    }
+
+    public boolean isPanZoomEnabled()
+    {
+        return panZoom.isEnabled();
     }
     
     @Override
@@ -58,9 +208,78 @@ public class ClassificationPlot<X extends Number, Y extends Number> extends Scat
         super.layoutChildren(); //To change body of generated methods, choose Tools | Templates.
     }
 
+    /**
+     * Sets a layer of points to draw on top of the decision surface, for
+     * data sets too large to give each point its own node. 
+     * @param points the points to draw, or {@code null} for none
+     */
+    public void setPoints(PointLayer points)
+    {
+        if(this.points != null)
+            getPlotChildren().removeAll(this.points.getNode(), picker.getNode());
+        this.points = points;
+        picker = points == null ? null : new PointPicker(points, this);
+        if(points != null)
+        {
+            int above = getPlotChildren().indexOf(canvas)+1;
+            getPlotChildren().add(above, points.getNode());
+            getPlotChildren().add(above+1, picker.getNode());
+        }
+        requestChartLayout();
+    }
+
+    public PointLayer getPoints()
+    {
+        return points;
+    }
+    
+    /**
+     * 
+     * @return the picker of the points of the point layer, which exposes the
+     * rows the user selected, or {@code null} if there is no point layer
+     */
+    public PointPicker getPointPicker()
+    {
+        return picker;
+    }
+    
+    /**
+     * Shows the given points of the {@link #setPoints(com.edwardraff.jsatfx.PointLayer) 
+     * point layer} as real, enlarged marker nodes over the rest. 
+     * @param rows the indices of the points to select, in the arrays of the
+     * point layer
+     */
+    public void setSelectedPoints(int... rows)
+    {
+        if(picker == null)
+            throw new IllegalStateException("the plot has no point layer to select from");
+        picker.selectPoints(rows);
+    }
+    
+    /**
+     * 
+     * @return the indices of the selected points, which is empty if there is
+     * no point layer
+     */
+    public int[] getSelectedPoints()
+    {
+        return picker == null ? new int[0] : picker.getSelectedPoints();
+    }
+    
+    /**
+     * 
+     * @return the index of the point of the point layer under the mouse, or
+     * -1 if there is none
+     */
+    public int getHoveredPoint()
+    {
+        return picker == null ? -1 : picker.getHoveredPoint();
+    }
+
     public void setResolution(int resolution)
     {
         this.resolution = resolution;
+        requestChartLayout();
     }
 
     public int getResolution()
@@ -68,16 +287,157 @@ public class ClassificationPlot<X extends Number, Y extends Number> extends Scat
         return resolution;
     }
     
+    /**
+     * Sets whether the decision surface should be computed progressively. In
+     * progressive mode a coarse version of the surface is shown first, and is
+     * then refined in passes that halve the block size, down to the
+     * {@link #setResolution(int) resolution} of the plot. Only blocks near a
+     * decision boundary are refined, so slow classifiers give a usable picture
+     * almost immediately, and the final surface needs fewer evaluations.
+     *
+     * @param progressive {@code true} to compute the surface progressively
+     */
+    public void setProgressive(boolean progressive)
+    {
+        if(this.progressive == progressive)
+            return;
+        this.progressive = progressive;
+        classifierChanged();
+    }
+
+    public boolean isProgressive()
+    {
+        return progressive;
+    }
+    
+    /**
+     * Sets whether the decision surface should be found with an adaptive quad
+     * tree when {@link #setHardBoundaries(boolean) hard boundaries} are used.
+     * The classifier is only evaluated on the corners of a region, and the
+     * region is only split further when the corners disagree, so most cells
+     * inside of a single class region are never evaluated. This has no effect
+     * on soft boundaries, which need the probabilities of every cell.
+     *
+     * @param adaptive {@code true} to evaluate hard boundaries adaptively
+     */
+    public void setAdaptive(boolean adaptive)
+    {
+        if(this.adaptive == adaptive)
+            return;
+        this.adaptive = adaptive;
+        classifierChanged();
+    }
+
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    /**
+     * Sets the maximum number of times the classifier will be called when
+     * computing a decision surface adaptively. Once the limit would be
+     * exceeded, the regions that have not been resolved are filled with the
+     * class of one of their corners. The limit is never exceeded, so it must
+     * at least cover the four corners of the whole plot that the search
+     * starts from.
+     *
+     * @param maxModelCalls the maximum number of classifier calls per
+     * surface, at least 4
+     */
+    public void setMaxModelCalls(int maxModelCalls)
+    {
+        if(maxModelCalls < DecisionSurface.MIN_ADAPTIVE_CALLS)
+            throw new IllegalArgumentException("maxModelCalls must be at least " + DecisionSurface.MIN_ADAPTIVE_CALLS + ", not " + maxModelCalls);
+        this.maxModelCalls = maxModelCalls;
+        classifierChanged();
+    }
+
+    public int getMaxModelCalls()
+    {
+        return maxModelCalls;
+    }
+    
     public void setHardBoundaries(boolean hard)
     {
         this.hard = hard;
+        requestChartLayout();
     }
     
     public boolean isHardBoundaries()
     {
         return hard;
     }
+
+    /**
+     * Sets the classifier whose decision surface is shown
+     * @param classifier the trained classifier to show, or {@code null} to
+     * show no surface
+     */
+    public void setClassifier(Classifier classifier)
+    {
+        this.classifier = classifier;
+        classifierChanged();
+    }
+
+    public Classifier getClassifier()
+    {
+        return classifier;
+    }
+    
+    /**
+     * Shows a slice through a higher dimensional feature space. The
+     * classifier is given points where the x and y values of the plot are
+     * placed in the given features, and every other feature has the value of
+     * the reference point. The axes of the plot should show the chosen
+     * features. 
+     *
+     * @param xFeature the feature plotted on the x axis
+     * @param yFeature the feature plotted on the y axis
+     * @param reference the value of every feature, which is copied
+     */
+    public void setSlice(int xFeature, int yFeature, double[] reference)
+    {
+        if(xFeature == yFeature)
+            throw new IllegalArgumentException("The x and y axis must show different features, both were " + xFeature);
+        if(xFeature < 0 || yFeature < 0 || xFeature >= reference.length || yFeature >= reference.length)
+            throw new IllegalArgumentException("Features " + xFeature + " and " + yFeature + " are not both in a reference point of " + reference.length + " features");
+        //a fresh copy, as a surface still being computed may be using the old one
+        sliceTemplate = reference.clone();
+        sliceFeatures = new int[]{xFeature, yFeature};
+        classifierChanged();
+    }
+    
+    /**
+     * Stops showing a slice, so that the classifier is given only the x and y
+     * values of the plot
+     */
+    public void clearSlice()
+    {
+        sliceTemplate = null;
+        sliceFeatures = null;
+        classifierChanged();
+    }
+
+    /**
+     * 
+     * @return a copy of the reference point of the slice shown, or
+     * {@code null} if not showing a slice
+     */
+    public double[] getSliceReference()
+    {
+        return sliceTemplate == null ? null : sliceTemplate.clone();
+    }
     
+    /**
+     * Discards the cached decision surface, so that it will be computed again
+     * on the next layout pass. This should be called whenever the classifier
+     * has been altered in place, such as by being re-trained.
+     */
+    public void classifierChanged()
+    {
+        classifierVersion++;
+        requestChartLayout();
+    }
     
     @Override
     protected void layoutPlotChildren()
@@ -93,64 +453,232 @@ public class ClassificationPlot<X extends Number, Y extends Number> extends Scat
         double mid_x = getXAxis().getDisplayPosition((X) Double.valueOf((x_max+x_min)/2));
         double mid_y = getYAxis().getDisplayPosition((Y) Double.valueOf((y_max+y_min)/2));
         
+        computingLabel.autosize();
+        computingLabel.relocate(5, 5);
+        if(metricsLabel != null)
+        {
+            metricsLabel.toFront();
+            metricsLabel.autosize();
+            metricsLabel.relocate(5, 30);
+        }
+        if(points != null)
+        {
+            points.layout(getXAxis(), getYAxis());
+            picker.layout(getXAxis(), getYAxis());
+        }
         
         if (canvas != null)
         {
-            getPlotChildren().remove(canvas);
-            getPlotChildren().add(0, canvas = new Canvas(getWidth(), getHeight()));
+            final double w = getWidth();
+            final double h = getHeight();
             
-            Color[] colors = Utils.getNcolors(getData().size());
-            for(int i = 0; i < colors.length; i++)
-            {
-                colors[i] = colors[i].brighter();
-                colors[i] = colors[i].deriveColor(0, 1, 1, backgroundOpacity);
-            }
+            double leftMost = mid_x-(w/2);
+            double topMost = mid_y-(h/2);
             
-            final double w = canvas.prefWidth(-1);
-            final double h = canvas.prefHeight(-1);
+            canvas.resizeRelocate(leftMost, topMost, w, h);
             
+            double x_0 = getXAxis().getValueForDisplay(leftMost).doubleValue();
+            double y_0 = getYAxis().getValueForDisplay(topMost).doubleValue();
+            double x_1 = getXAxis().getValueForDisplay(leftMost+1).doubleValue();
+            double y_1 = getYAxis().getValueForDisplay(topMost+1).doubleValue();
+            GridAxis xGrid = GridAxis.of(x_0, x_1-x_0, w, resolution);
+            GridAxis yGrid = GridAxis.of(y_0, y_1-y_0, h, resolution);
+            int classes = getData().size();
             
-            double leftMost = mid_x-(w/2);
-            double topMost = mid_y-(h/2);
+            boolean cached = surface != null && surface.matches(xGrid, yGrid, classes, classifierVersion)
+                    && (hard || !surface.labelsOnly) && (progressive || !surface.approximate);
+            metrics.layoutPass(cached);
+            if(cached)
+            {
+                //only a re-layout, or a change that does not need the classifier
+                if(surface == painted && paintedHard != hard)
+                    paintSurface(surface);
+                return;
+            }
             
-            GraphicsContext graphics = canvas.getGraphicsContext2D();
-            graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
-            graphics.setFill(Color.BLUE);
-            graphics.setStroke(Color.BLUE);
-            for(int i = 0; i < canvas.getWidth(); i+=resolution)
-                for(int j = 0; j < canvas.getHeight(); j+=resolution)
+            if(canvas.getWidth() != w || canvas.getHeight() != h)
+            {
+                canvas.setWidth(w);
+                canvas.setHeight(h);
+            }
+            
+            DecisionSurface next = new DecisionSurface(xGrid, yGrid, classes, classifierVersion);
+            next.labelsOnly = adaptive && hard;
+            if(surface != null && surface.isFinished())
+                reusable = surface;
+            preview(next);
+            surface = next;
+            startSurface(next, reusable);
+        }
+        
+    }
+    
+    /**
+     * Cancels any surface still being computed, and starts the computation of
+     * the given one in the background. Once done, it will be painted onto the
+     * canvas. In progressive mode every intermediate pass is painted as well.
+     * The cells of the surface are allocated, and those known by the last
+     * surface copied over, by the background task as well, so a pan costs
+     * the FX thread nothing per cell.
+     *
+     * @param surface the surface to compute
+     * @param last the last finished surface, whose cells may be reused, or
+     * {@code null}
+     */
+    private void startSurface(final DecisionSurface surface, final DecisionSurface last)
+    {
+        if(pending != null)
+            pending.cancel(false);
+        pending = null;
+        
+        if(classifier == null)
+        {
+            painted = null;
+            imageSurface = null;
+            canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            computingLabel.setVisible(false);
+            return;
+        }
+        
+        final BatchClassifier model = metrics.counting(sliceTemplate == null ? BatchClassifier.of(classifier)
+                : ClassifierBatch.slice(classifier, sliceTemplate, sliceFeatures));
+        final SurfaceRenderer passRenderer = getRenderer(surface.classes);
+        final boolean passHard = hard;
+        final int width = (int) ceil(canvas.getWidth());
+        final int height = (int) ceil(canvas.getHeight());
+        int stride = 1;
+        while(progressive && stride*2*resolution <= PROGRESSIVE_START)
+            stride *= 2;
+        final int coarsest = stride;
+        final int maxCalls = maxModelCalls;
+        
+        final Task<DecisionSurface> task = new Task<DecisionSurface>()
+        {
+            @Override
+            protected DecisionSurface call() throws Exception
+            {
+                final Task<DecisionSurface> self = this;
+                Runnable publish = () ->
                 {
-                    double x_val = getXAxis().getValueForDisplay(leftMost+i).doubleValue();
-                    double y_val = getYAxis().getValueForDisplay(topMost+j).doubleValue();
-
-                    DataPoint dp = new DataPoint(DenseVector.toDenseVec(x_val, y_val));
-                    if(classifier != null)
+                    //render off of the FX thread, as the surface is only safe to read from this one
+                    final int[] passPixels = new int[max(width*height, 0)];
+                    long start = System.nanoTime();
+                    passRenderer.render(surface, passPixels, width, height, passHard);
+                    metrics.rasterized(System.nanoTime()-start);
+                    Platform.runLater(() ->
                     {
-                        CategoricalResults classification = classifier.classify(dp);
-                        if(hard)
-                        {
-                            graphics.setFill(colors[classification.mostLikely()]);
-                        }
-                        else
-                        {
-                            double R = 0, G = 0,B = 0;
-                            for(int k = 0; k < colors.length; k++)
-                            {
-                                R += colors[k].getRed()*colors[k].getRed()*classification.getProb(k)*65025;
-                                G += colors[k].getGreen()*colors[k].getGreen()*classification.getProb(k)*65025;
-                                B += colors[k].getBlue()*colors[k].getBlue()*classification.getProb(k)*65025;
-
-                            }
-
-                            graphics.setFill(Color.rgb((int)sqrt(R), (int)sqrt(G), (int)sqrt(B), backgroundOpacity));
-                        }
-                        graphics.fillRect(i, j, resolution, resolution);
-                    }
-                }
-                        
-            canvas.resizeRelocate(mid_x - (w / 2), mid_y - (h / 2), w, h);
+                        if(self == pending)
+                            showPixels(surface, passPixels, width, height);
+                    });
+                };
+                
+                surface.reuse(last);
+                boolean done;
+                if(surface.labelsOnly)
+                    done = surface.computeAdaptive(model, ForkJoinPool.commonPool(), this::isCancelled, maxCalls, progressive ? publish : null);
+                else if(coarsest > 1)
+                    done = surface.computeProgressive(model, ForkJoinPool.commonPool(), this::isCancelled, coarsest, publish);
+                else
+                    done = surface.compute(model, ForkJoinPool.commonPool(), this::isCancelled);
+                return done ? surface : null;
+            }
+        };
+        task.setOnSucceeded(e ->
+        {
+            if(task != pending)
+                return;
+            pending = null;
+            computingLabel.setVisible(false);
+            if(task.getValue() != null)
+                paintSurface(task.getValue());
+        });
+        task.setOnFailed(e ->
+        {
+            if(task != pending)
+                return;
+            pending = null;
+            computingLabel.setVisible(false);
+        });
+        
+        pending = task;
+        computingLabel.setVisible(true);
+        computingLabel.toFront();
+        Utils.BACKGROUND.execute(task);
+    }
+    
+    /**
+     * Shows what is already known of a surface about to be computed, when the
+     * view moved but the classifier did not change, by drawing the image last
+     * shown where it now falls, placed by the grids of the surface it was
+     * rendered from. After a pan it is only shifted,
+     * leaving the newly exposed cells blank, and after a zoom it is scaled to
+     * fit.
+     *
+     * @param next the surface about to be computed
+     */
+    private void preview(DecisionSurface next)
+    {
+        DecisionSurface last = imageSurface;
+        if(last == null || last.version != next.version || image == null)
+            return;
+        
+        //where the corners of the last image fall in the new view
+        double left = next.xGrid.pixelAt(last.xGrid.valueAt(0));
+        double right = next.xGrid.pixelAt(last.xGrid.valueAt(image.getWidth()));
+        double top = next.yGrid.pixelAt(last.yGrid.valueAt(0));
+        double bottom = next.yGrid.pixelAt(last.yGrid.valueAt(image.getHeight()));
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        graphics.drawImage(image, left, top, right-left, bottom-top);
+    }
+    
+    private SurfaceRenderer getRenderer(int classes)
+    {
+        if(renderer == null || rendererClasses != classes)
+        {
+            renderer = new SurfaceRenderer(SurfaceRenderer.backgroundColors(classes), backgroundOpacity);
+            rendererClasses = classes;
         }
+        return renderer;
+    }
+    
+    private void paintSurface(DecisionSurface surface)
+    {
+        int width = (int) ceil(canvas.getWidth());
+        int height = (int) ceil(canvas.getHeight());
+        if(pixels == null || pixels.length != max(width*height, 0))
+            pixels = new int[max(width*height, 0)];
         
+        painted = surface;
+        paintedHard = hard;
+        long start = System.nanoTime();
+        getRenderer(surface.classes).render(surface, pixels, width, height, hard);
+        metrics.rasterized(System.nanoTime()-start);
+        showPixels(surface, pixels, width, height);
+    }
+    
+    /**
+     * Pushes the given pixels into the image shown on the canvas
+     * @param surface the surface the pixels were rendered from
+     * @param argb the pixels to show
+     * @param width the width of the image
+     * @param height the height of the image
+     */
+    private void showPixels(DecisionSurface surface, int[] argb, int width, int height)
+    {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if(width <= 0 || height <= 0)
+        {
+            imageSurface = null;
+            return;
+        }
+        if(image == null || image.getWidth() != width || image.getHeight() != height)
+            image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), argb, 0, width);
+        imageSurface = surface;
+        graphics.drawImage(image, 0, 0);
+        metrics.frameShown();
     }
 
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import jsat.classifiers.CategoricalResults;
+import jsat.classifiers.Classifier;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+
+/**
+ * Evaluates a regular {@link Classifier} in batches. Each call to
+ * {@link #classify(double[], int, int, double[], int) } creates a single
+ * vector and data point, and overwrites the vector's values for each point of
+ * the batch. This relies on the {@link DataPoint} keeping a reference to the
+ * vector it was given, and on the classifier not holding on to the data point
+ * after returning. <br>
+ * A batch can also classify a slice through a higher dimensional space, where
+ * the coordinates given are only some of the features and every other
+ * feature is held at the value of a template point. The vector then starts as
+ * a copy of the template, and only the given features are overwritten for
+ * each point.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+class ClassifierBatch implements BatchClassifier
+{
+    private final Classifier classifier;
+    /**
+     * The values of every feature not being varied, or {@code null} if the
+     * coordinates cover every feature
+     */
+    private final double[] template;
+    /**
+     * The feature each coordinate sets, or {@code null} for the first ones
+     */
+    private final int[] features;
+
+    public ClassifierBatch(Classifier classifier)
+    {
+        this(classifier, null, null);
+    }
+
+    /**
+     * Creates a batch classifier for a slice of the feature space
+     * @param classifier the classifier to evaluate
+     * @param template the values of every feature, which is not copied
+     * @param features the feature each coordinate of a point sets
+     */
+    public ClassifierBatch(Classifier classifier, double[] template, int[] features)
+    {
+        this.classifier = classifier;
+        this.template = template;
+        this.features = features;
+    }
+
+    @Override
+    public void classify(double[] coords, int dimensions, int count, double[] probs, int classes)
+    {
+        DenseVector vec = new DenseVector(template == null ? dimensions : template.length);
+        if(template != null)
+            for(int d = 0; d < template.length; d++)
+                vec.set(d, template[d]);
+        DataPoint dp = new DataPoint(vec);
+        for(int i = 0; i < count; i++)
+        {
+            for(int d = 0; d < dimensions; d++)
+                vec.set(features == null ? d : features[d], coords[i*dimensions+d]);
+            CategoricalResults result = classifier.classify(dp);
+            for(int k = 0; k < classes; k++)
+                probs[i*classes+k] = result.getProb(k);
+        }
+    }
+    
+    /**
+     * Creates a batch classifier that evaluates a slice through the feature
+     * space of a classifier. A classifier that already implements
+     * {@link BatchClassifier} is given full points, built from the template
+     * in one buffer per batch.
+     *
+     * @param classifier the classifier to evaluate
+     * @param template the values of every feature, which is not copied
+     * @param features the feature each coordinate of a point sets
+     * @return a batch classifier for the slice
+     */
+    static BatchClassifier slice(Classifier classifier, double[] template, int[] features)
+    {
+        if(!(classifier instanceof BatchClassifier))
+            return new ClassifierBatch(classifier, template, features);
+        final BatchClassifier batch = (BatchClassifier) classifier;
+        return (double[] coords, int dimensions, int count, double[] probs, int classes) ->
+        {
+            final int full = template.length;
+            double[] expanded = new double[count*full];
+            for(int i = 0; i < count; i++)
+            {
+                System.arraycopy(template, 0, expanded, i*full, full);
+                for(int d = 0; d < dimensions; d++)
+                    expanded[i*full+features[d]] = coords[i*dimensions+d];
+            }
+            batch.classify(expanded, full, count, probs, classes);
+        };
+    }
+}
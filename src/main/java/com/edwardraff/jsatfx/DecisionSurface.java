@@ -0,0 +1,598 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds the class probabilities of a classifier evaluated over a regular grid
+ * of cells, as used to paint the background of a {@link ClassificationPlot}.
+ * The grid is split into tiles of rows that are evaluated in parallel, so that
+ * the work can be done off of the JavaFX Application Thread. <br>
+ * A surface remembers which cells have been evaluated, so that the cells of a
+ * previous surface on the same lattice (see {@link GridAxis}) can be copied
+ * over instead of being evaluated again. <br>
+ * The cells to evaluate are split into batches, and each batch gathers the
+ * coordinates of its cells into one primitive buffer and evaluates them with a
+ * single call to a {@link BatchClassifier}. <br>
+ * The cells of a surface are only allocated once it is first computed or
+ * reused into, so that a surface can be requested cheaply on the JavaFX
+ * Application Thread and filled in entirely by the thread computing it.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+class DecisionSurface
+{
+    /**
+     * The number of cells evaluated by a single leaf task
+     */
+    private static final int CELLS_PER_BATCH = 1024;
+    static final byte UNKNOWN = 0;
+    /**
+     * A cell whose value was copied from a nearby cell, and may be replaced
+     * by a finer estimate
+     */
+    static final byte ESTIMATED = 1;
+    static final byte KNOWN = 2;
+    /**
+     * The smallest budget {@link #computeAdaptive} accepts, which is the four
+     * corners of the first region
+     */
+    static final int MIN_ADAPTIVE_CALLS = 4;
+
+    final GridAxis xGrid;
+    final GridAxis yGrid;
+    final int classes;
+    /**
+     * The version of the classifier this surface is for
+     */
+    final long version;
+    /**
+     * The probability of each class for each cell, stored in row major order.
+     * {@code null} until the cells are allocated.
+     */
+    float[] probs;
+    /**
+     * The state of each cell, one of {@link #UNKNOWN}, {@link #ESTIMATED} or
+     * {@link #KNOWN}. {@code null} until the cells are allocated.
+     */
+    byte[] state;
+    /**
+     * Set once a call to {@link #compute} has returned, which makes all of
+     * its writes visible to the thread that reads this flag.
+     */
+    private volatile boolean finished = false;
+    /**
+     * {@code true} if the values of this surface are only good for finding
+     * the most likely class of each cell, and not for the probabilities
+     */
+    boolean labelsOnly = false;
+    /**
+     * {@code true} if some cells of this surface were left as the estimate of
+     * their block by {@link #computeProgressive}, so it is only good where a
+     * progressive surface was asked for. Only the cells that were evaluated
+     * are ever {@link #reuse(DecisionSurface) reused}.
+     */
+    boolean approximate = false;
+
+    /**
+     * Creates a new, un-evaluated, surface
+     * @param xGrid the grid for the x axis
+     * @param yGrid the grid for the y axis
+     * @param classes the number of classes the classifier predicts
+     * @param version the version of the classifier that will be evaluated
+     */
+    DecisionSurface(GridAxis xGrid, GridAxis yGrid, int classes, long version)
+    {
+        this.xGrid = xGrid;
+        this.yGrid = yGrid;
+        this.classes = classes;
+        this.version = version;
+    }
+
+    /**
+     * Allocates the cells of this surface, if they are not already
+     */
+    private void allocate()
+    {
+        if(state != null)
+            return;
+        probs = new float[xGrid.cells*yGrid.cells*classes];
+        state = new byte[xGrid.cells*yGrid.cells];
+    }
+
+    int cols()
+    {
+        return xGrid.cells;
+    }
+
+    int rows()
+    {
+        return yGrid.cells;
+    }
+
+    float getProb(int col, int row, int k)
+    {
+        return probs[(row*xGrid.cells+col)*classes+k];
+    }
+
+    /**
+     *
+     * @param col the column of the cell
+     * @param row the row of the cell
+     * @return the most likely class of the cell
+     */
+    int mostLikely(int col, int row)
+    {
+        return mostLikely(row*xGrid.cells+col);
+    }
+
+    private int mostLikely(int cell)
+    {
+        int pos = cell*classes;
+        int best = 0;
+        for(int k = 1; k < classes; k++)
+            if(probs[pos+k] > probs[pos+best])
+                best = k;
+        return best;
+    }
+
+    /**
+     *
+     * @return {@code true} once no more cells of this surface will be
+     * evaluated, either because it was completed or because its computation
+     * was cancelled
+     */
+    boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     *
+     * @param xGrid the grid for the x axis
+     * @param yGrid the grid for the y axis
+     * @param classes the number of classes
+     * @param version the version of the classifier
+     * @return {@code true} if this surface covers exactly the given cells for
+     * the same classifier
+     */
+    boolean matches(GridAxis xGrid, GridAxis yGrid, int classes, long version)
+    {
+        return this.version == version && this.classes == classes &&
+                this.xGrid.sameCells(xGrid) && this.yGrid.sameCells(yGrid);
+    }
+
+    /**
+     * Copies every evaluated cell the given surface has in common with this
+     * one. Nothing is copied if the other surface is for a different
+     * classifier, is on a different lattice, or is still being computed.
+     *
+     * @param other the previous surface
+     * @return the number of cells copied
+     */
+    int reuse(DecisionSurface other)
+    {
+        if(other == null || !other.finished || other.state == null || other.version != version || other.classes != classes)
+            return 0;
+        if(!xGrid.sameLattice(other.xGrid) || !yGrid.sameLattice(other.yGrid))
+            return 0;
+        allocate();
+        int copied = 0;
+        for(int row = 0; row < other.rows(); row++)
+        {
+            long r = yGrid.indexOf(other.yGrid, row);
+            if(r < 0 || r >= rows())
+                continue;
+            for(int col = 0; col < other.cols(); col++)
+            {
+                long c = xGrid.indexOf(other.xGrid, col);
+                if(c < 0 || c >= cols())
+                    continue;
+                int from = row*other.cols()+col;
+                int to = (int) r*cols()+(int) c;
+                if(other.state[from] != KNOWN)
+                    continue;
+                System.arraycopy(other.probs, from*classes, probs, to*classes, classes);
+                state[to] = KNOWN;
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Evaluates the classifier on every cell of the surface that is not
+     * already known.
+     *
+     * @param classifier the classifier to evaluate
+     * @param pool the pool to evaluate the tiles of the grid in
+     * @param cancelled checked between tiles, evaluation stops early once it
+     * returns {@code true}
+     * @return {@code true} if the whole surface was computed, {@code false}
+     * if it was cancelled first
+     */
+    boolean compute(BatchClassifier classifier, ForkJoinPool pool, BooleanSupplier cancelled)
+    {
+        try
+        {
+            allocate();
+            int[] cells = new int[state.length];
+            int count = 0;
+            for(int cell = 0; cell < state.length; cell++)
+                if(state[cell] != KNOWN)
+                    cells[count++] = cell;
+            evaluate(cells, count, classifier, pool, cancelled);
+            return !cancelled.getAsBoolean();
+        }
+        finally
+        {
+            finished = true;
+        }
+    }
+
+    /**
+     * Evaluates the surface from coarse to fine. The first pass evaluates one
+     * cell out of every block of {@code coarsest} by {@code coarsest} cells,
+     * and uses it as an estimate for the whole block. Every following pass
+     * halves the block size, but only for blocks where the most likely class
+     * differs from that of a neighboring cell, as the decision boundary is the
+     * only place where finer detail changes the picture. Cells inside settled
+     * blocks keep the estimate of their block, and stay {@link #ESTIMATED} so
+     * that a later surface does not reuse them as if they were evaluated. The
+     * surface is marked {@link #approximate} if any are left.
+     *
+     * @param classifier the classifier to evaluate
+     * @param pool the pool to evaluate the tiles of the grid in
+     * @param cancelled checked between tiles, evaluation stops early once it
+     * returns {@code true}
+     * @param coarsest the block size of the first pass, in cells. Should be a
+     * power of two.
+     * @param publish run after each pass completes, from the calling thread
+     * @return {@code true} if the whole surface was computed, {@code false}
+     * if it was cancelled first
+     */
+    boolean computeProgressive(BatchClassifier classifier, ForkJoinPool pool, BooleanSupplier cancelled, int coarsest, Runnable publish)
+    {
+        try
+        {
+            allocate();
+            final int cols = cols();
+            final int rows = rows();
+            int[] cells = new int[state.length];
+            //marks the cells that belong to a block that still needs refining
+            boolean[] active = new boolean[state.length];
+            Arrays.fill(active, true);
+            for(int stride = Math.max(coarsest, 1); stride >= 1; stride /= 2)
+            {
+                if(stride < coarsest)
+                    settleBlocks(stride*2, active);
+                int count = 0;
+                for(int row = 0; row < rows; row = yGrid.blockEnd(row, stride))
+                    for(int col = 0; col < cols; col = xGrid.blockEnd(col, stride))
+                        if(active[row*cols+col])
+                            cells[count++] = row*cols+col;
+                evaluate(cells, count, classifier, pool, cancelled);
+                if(cancelled.getAsBoolean())
+                    return false;
+                for(int i = 0; i < count; i++)
+                    fillBlock(cells[i], stride);
+                publish.run();
+            }
+            for(int cell = 0; cell < state.length && !approximate; cell++)
+                approximate = state[cell] == ESTIMATED;
+            return true;
+        }
+        finally
+        {
+            finished = true;
+        }
+    }
+
+    /**
+     * Evaluates the surface with an adaptive quad tree, which is only valid
+     * for showing the most likely class of each cell. Starting with the whole
+     * grid as one region, the four corner cells of each region are evaluated.
+     * If they all agree on the most likely class, the whole region is filled
+     * with that class, otherwise it is split into four and the process
+     * repeats. Regions are processed one level at a time, and all of the
+     * corners of a level are evaluated in parallel. The caller should mark the
+     * surface as {@link #labelsOnly}. <br>
+     * Filled cells are left as {@link #ESTIMATED}, so that only evaluated
+     * cells are re-used by a later surface.
+     *
+     * @param classifier the classifier to evaluate
+     * @param pool the pool to evaluate the tiles of the grid in
+     * @param cancelled checked between tiles, evaluation stops early once it
+     * returns {@code true}
+     * @param maxCalls the maximum number of cells to evaluate, which must be
+     * at least {@link #MIN_ADAPTIVE_CALLS}. Once the next level would go over
+     * this limit, every remaining region is filled with the class of one of
+     * its evaluated corners.
+     * @param publish run after each level completes, from the calling thread,
+     * may be {@code null}
+     * @return {@code true} if the whole surface was computed, {@code false}
+     * if it was cancelled first
+     */
+    boolean computeAdaptive(BatchClassifier classifier, ForkJoinPool pool, BooleanSupplier cancelled, int maxCalls, Runnable publish)
+    {
+        if(maxCalls < MIN_ADAPTIVE_CALLS)
+            throw new IllegalArgumentException("maxCalls must be at least " + MIN_ADAPTIVE_CALLS + ", not " + maxCalls);
+        try
+        {
+            allocate();
+            final int cols = cols();
+            final int rows = rows();
+            if(cols == 0 || rows == 0)
+                return true;
+            //each region is stored as 5 ints: col start, col end, row start, row end, and a known cell to fall back on
+            int[] regions = new int[]{0, cols, 0, rows, 0};
+            int regionCount = 1;
+            int[] cells = new int[state.length];
+            //the level at which a cell was queued for evaluation, to avoid evaluating a corner twice
+            int[] queued = new int[state.length];
+            int level = 0;
+            int calls = 0;
+            while(regionCount > 0)
+            {
+                level++;
+                int count = 0;
+                for(int i = 0; i < regionCount; i++)
+                    for(int corner : corners(regions, i))
+                        if(state[corner] != KNOWN && queued[corner] != level)
+                        {
+                            queued[corner] = level;
+                            cells[count++] = corner;
+                        }
+                
+                if(calls+count > maxCalls)
+                {
+                    //out of budget, use what we know for the rest
+                    for(int i = 0; i < regionCount; i++)
+                        fillRegion(regions, i, regions[i*5+4]);
+                    break;
+                }
+                
+                evaluate(cells, count, classifier, pool, cancelled);
+                calls += count;
+                if(cancelled.getAsBoolean())
+                    return false;
+                
+                int[] next = new int[regionCount*4*5];
+                int nextCount = 0;
+                for(int i = 0; i < regionCount; i++)
+                {
+                    int[] corners = corners(regions, i);
+                    int label = mostLikely(corners[0]);
+                    boolean agree = true;
+                    for(int corner : corners)
+                        agree = agree && mostLikely(corner) == label;
+                    int c0 = regions[i*5], c1 = regions[i*5+1];
+                    int r0 = regions[i*5+2], r1 = regions[i*5+3];
+                    if(agree)
+                    {
+                        fillRegion(regions, i, corners[0]);
+                        continue;
+                    }
+                    if(c1-c0 <= 2 && r1-r0 <= 2)
+                        continue;//every cell is a corner, nothing left to do
+                    int cm = (c0+c1+1)/2, rm = (r0+r1+1)/2;
+                    //each child shares one corner with its parent, which is used as its fall back
+                    nextCount = addRegion(next, nextCount, c0, cm, r0, rm, corners[0]);
+                    nextCount = addRegion(next, nextCount, cm, c1, r0, rm, corners[1]);
+                    nextCount = addRegion(next, nextCount, c0, cm, rm, r1, corners[2]);
+                    nextCount = addRegion(next, nextCount, cm, c1, rm, r1, corners[3]);
+                }
+                regions = next;
+                regionCount = nextCount;
+                if(publish != null)
+                    publish.run();
+            }
+            return true;
+        }
+        finally
+        {
+            finished = true;
+        }
+    }
+
+    /**
+     *
+     * @param regions the array of regions
+     * @param i the index of the region
+     * @return the top left, top right, bottom left and bottom right cells of
+     * the region
+     */
+    private int[] corners(int[] regions, int i)
+    {
+        final int cols = cols();
+        int c0 = regions[i*5], c1 = regions[i*5+1]-1;
+        int r0 = regions[i*5+2], r1 = regions[i*5+3]-1;
+        return new int[]{r0*cols+c0, r0*cols+c1, r1*cols+c0, r1*cols+c1};
+    }
+
+    private static int addRegion(int[] regions, int count, int c0, int c1, int r0, int r1, int fallBack)
+    {
+        if(c0 >= c1 || r0 >= r1)
+            return count;
+        int pos = count*5;
+        regions[pos] = c0;
+        regions[pos+1] = c1;
+        regions[pos+2] = r0;
+        regions[pos+3] = r1;
+        regions[pos+4] = fallBack;
+        return count+1;
+    }
+
+    /**
+     * Copies the values of a cell to all of the cells of a region that have
+     * not been evaluated.
+     *
+     * @param regions the array of regions
+     * @param i the index of the region
+     * @param cell the cell to copy from
+     */
+    private void fillRegion(int[] regions, int i, int cell)
+    {
+        final int cols = cols();
+        for(int row = regions[i*5+2]; row < regions[i*5+3]; row++)
+            for(int col = regions[i*5]; col < regions[i*5+1]; col++)
+            {
+                int other = row*cols+col;
+                if(state[other] == KNOWN)
+                    continue;
+                System.arraycopy(probs, cell*classes, probs, other*classes, classes);
+                state[other] = ESTIMATED;
+            }
+    }
+
+    /**
+     * Copies the values of the first cell of a block to all of the cells of
+     * the block that have not been evaluated.
+     *
+     * @param cell the first cell of the block
+     * @param stride the block size
+     */
+    private void fillBlock(int cell, int stride)
+    {
+        final int cols = cols();
+        int row0 = cell/cols, col0 = cell%cols;
+        int rowEnd = yGrid.blockEnd(row0, stride), colEnd = xGrid.blockEnd(col0, stride);
+        for(int row = row0; row < rowEnd; row++)
+            for(int col = col0; col < colEnd; col++)
+            {
+                int other = row*cols+col;
+                if(state[other] == KNOWN)
+                    continue;
+                System.arraycopy(probs, cell*classes, probs, other*classes, classes);
+                state[other] = ESTIMATED;
+            }
+    }
+
+    /**
+     * Marks every active block of the given size as inactive if all of its
+     * cells, and all of the cells touching it, have the same most likely
+     * class.
+     *
+     * @param stride the block size
+     * @param active the active flag of every cell
+     */
+    private void settleBlocks(int stride, boolean[] active)
+    {
+        final int cols = cols();
+        final int rows = rows();
+        for(int row0 = 0; row0 < rows; row0 = yGrid.blockEnd(row0, stride))
+            for(int col0 = 0; col0 < cols; col0 = xGrid.blockEnd(col0, stride))
+            {
+                if(!active[row0*cols+col0])
+                    continue;
+                int rowEnd = yGrid.blockEnd(row0, stride), colEnd = xGrid.blockEnd(col0, stride);
+                int label = mostLikely(col0, row0);
+                boolean settled = true;
+                for(int row = Math.max(row0-1, 0); row < Math.min(rowEnd+1, rows) && settled; row++)
+                    for(int col = Math.max(col0-1, 0); col < Math.min(colEnd+1, cols) && settled; col++)
+                        if(state[row*cols+col] != UNKNOWN && mostLikely(col, row) != label)
+                            settled = false;
+                if(!settled)
+                    continue;
+                for(int row = row0; row < rowEnd; row++)
+                    Arrays.fill(active, row*cols+col0, row*cols+colEnd, false);
+            }
+    }
+
+    /**
+     * Evaluates the classifier on the given cells, skipping any that are
+     * already known.
+     *
+     * @param cells the indices of the cells to evaluate
+     * @param count the number of cells in the array
+     * @param classifier the classifier to evaluate
+     * @param pool the pool to evaluate in
+     * @param cancelled checked between batches
+     */
+    private void evaluate(int[] cells, int count, BatchClassifier classifier, ForkJoinPool pool, BooleanSupplier cancelled)
+    {
+        if(count > 0)
+            pool.invoke(new Batch(classifier, cancelled, cells, 0, count));
+    }
+
+    /**
+     * Evaluates a range of a list of cells, splitting it into smaller batches
+     * to run in parallel.
+     */
+    private class Batch extends RecursiveAction
+    {
+        private static final long serialVersionUID = 4581069244316414380L;
+        private final BatchClassifier classifier;
+        private final BooleanSupplier cancelled;
+        private final int[] cells;
+        private final int from;
+        private final int to;
+
+        public Batch(BatchClassifier classifier, BooleanSupplier cancelled, int[] cells, int from, int to)
+        {
+            this.classifier = classifier;
+            this.cancelled = cancelled;
+            this.cells = cells;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to-from > CELLS_PER_BATCH)
+            {
+                int mid = (from+to)>>>1;
+                invokeAll(new Batch(classifier, cancelled, cells, from, mid),
+                        new Batch(classifier, cancelled, cells, mid, to));
+                return;
+            }
+
+            if(cancelled.getAsBoolean())
+                return;
+            final int cols = cols();
+            int[] todo = new int[to-from];
+            double[] coords = new double[todo.length*2];
+            int count = 0;
+            for(int i = from; i < to; i++)
+            {
+                int cell = cells[i];
+                if(state[cell] == KNOWN)
+                    continue;
+                coords[count*2] = xGrid.value(cell%cols);
+                coords[count*2+1] = yGrid.value(cell/cols);
+                todo[count++] = cell;
+            }
+            if(count == 0)
+                return;
+
+            double[] results = new double[count*classes];
+            classifier.classify(coords, 2, count, results, classes);
+            for(int i = 0; i < count; i++)
+            {
+                int cell = todo[i];
+                for(int k = 0; k < classes; k++)
+                    probs[cell*classes+k] = (float) results[i*classes+k];
+                state[cell] = KNOWN;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.ScatterChart;
+import javafx.scene.input.MouseEvent;
+
+/**
+ * A scatter chart for data sets too large to give every point its own
+ * {@link javafx.scene.chart.XYChart.Data} and node. The points are drawn by a
+ * {@link PointLayer} onto a canvas behind any regular series the chart may
+ * have, so memory use and frame time stay flat as the number of points grows.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ * @param <X>
+ * @param <Y>
+ */
+public class DenseScatterChart<X extends Number, Y extends Number> extends ScatterChart<X, Y>
+{
+    private final PointLayer points;
+    private final PointPicker picker;
+
+    /**
+     * Creates a new chart
+     * @param xAxis the x axis, which should have fixed bounds
+     * @param yAxis the y axis, which should have fixed bounds
+     * @param points the points to draw
+     */
+    public DenseScatterChart(Axis<X> xAxis, Axis<Y> yAxis, PointLayer points)
+    {
+        super(xAxis, yAxis);
+        this.points = points;
+        this.picker = new PointPicker(points, this);
+        getPlotChildren().addAll(0, Arrays.asList(points.getNode(), picker.getNode()));
+        addEventHandler(MouseEvent.ANY, picker::handle);
+    }
+
+    /**
+     * 
+     * @return the layer that draws the points of this chart
+     */
+    public PointLayer getPoints()
+    {
+        return points;
+    }
+
+    /**
+     * 
+     * @return the picker of the points, which exposes the rows the user
+     * selected
+     */
+    public PointPicker getPointPicker()
+    {
+        return picker;
+    }
+
+    /**
+     * Changes how the points are drawn
+     * @param mode the new mode to draw the points with
+     */
+    public void setMode(PointLayer.Mode mode)
+    {
+        points.setMode(mode);
+        requestChartLayout();
+    }
+
+    @Override
+    protected void layoutPlotChildren()
+    {
+        super.layoutPlotChildren();
+        points.layout(getXAxis(), getYAxis());
+        picker.layout(getXAxis(), getYAxis());
+    }
+}
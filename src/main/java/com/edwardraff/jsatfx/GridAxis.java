@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+/**
+ * Describes how one axis of a plot is cut into grid cells of a fixed number of
+ * pixels. Cells are aligned to a lattice in data space rather than to the
+ * pixels of the plot, so two grids with the same scale but different bounds
+ * (i.e., the plot was panned) share the cells they have in common. Cell
+ * {@code k} of the grid is lattice cell {@code origin+k}.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class GridAxis
+{
+    /**
+     * Relative tolerance used when deciding if two grids are on the same
+     * lattice
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * The number of pixels covered by each cell
+     */
+    final int resolution;
+    /**
+     * The width of a cell in data units, always positive
+     */
+    final double cellSize;
+    /**
+     * {@code 1} if data values increase with the pixel position, {@code -1}
+     * if they decrease (as is the case for the y axis)
+     */
+    final int direction;
+    /**
+     * The lattice index of the first cell
+     */
+    final long origin;
+    /**
+     * The number of cells needed to cover the axis
+     */
+    final int cells;
+    /**
+     * The pixel position of the leading edge of the first cell, in the range
+     * (-resolution, 0]
+     */
+    final int pixelOffset;
+
+    private GridAxis(int resolution, double cellSize, int direction, long origin, int cells, int pixelOffset)
+    {
+        this.resolution = resolution;
+        this.cellSize = cellSize;
+        this.direction = direction;
+        this.origin = origin;
+        this.cells = cells;
+        this.pixelOffset = pixelOffset;
+    }
+
+    /**
+     * Creates the grid for an axis with a linear mapping from pixels to
+     * values.
+     *
+     * @param valueAtZero the data value at pixel 0
+     * @param valuePerPixel the change in data value from one pixel to the
+     * next, may be negative
+     * @param pixels the number of pixels to cover
+     * @param resolution the number of pixels covered by each cell
+     * @return the grid for the axis
+     */
+    static GridAxis of(double valueAtZero, double valuePerPixel, double pixels, int resolution)
+    {
+        int direction = valuePerPixel < 0 ? -1 : 1;
+        double perPixel = Math.abs(valuePerPixel);
+        double cellSize = perPixel*resolution;
+        double start = valueAtZero*direction;
+        long origin = (long) Math.floor(start/cellSize);
+        int pixelOffset = (int) Math.round((origin*cellSize-start)/perPixel);
+        pixelOffset = Math.max(Math.min(pixelOffset, 0), 1-resolution);
+        int cells = (int) Math.ceil((pixels-pixelOffset)/resolution);
+        return new GridAxis(resolution, cellSize, direction, origin, Math.max(cells, 0), pixelOffset);
+    }
+
+    /**
+     *
+     * @param k the index of the cell
+     * @return the data value at the leading edge of the cell
+     */
+    double value(int k)
+    {
+        return (origin+k)*cellSize*direction;
+    }
+
+    /**
+     *
+     * @param k the index of the cell
+     * @return the pixel position of the leading edge of the cell
+     */
+    int pixel(int k)
+    {
+        return pixelOffset+k*resolution;
+    }
+
+    /**
+     *
+     * @param p a pixel position, which need not be a whole number
+     * @return the data value at the pixel position
+     */
+    double valueAt(double p)
+    {
+        return (origin+(p-pixelOffset)/resolution)*cellSize*direction;
+    }
+
+    /**
+     *
+     * @param v a data value
+     * @return the pixel position of the data value
+     */
+    double pixelAt(double v)
+    {
+        return pixelOffset+(v*direction/cellSize-origin)*resolution;
+    }
+
+    /**
+     * The grid can be divided into blocks of {@code stride} cells that start at
+     * lattice indices that are a multiple of {@code stride}, so that the
+     * blocks of a smaller power of two stride are nested inside those of a
+     * larger one. The first block is cut short by the start of the grid.
+     *
+     * @param k the index of a cell that starts a block
+     * @param stride the number of cells in a block
+     * @return the index of the first cell after the block that starts with
+     * cell {@code k}
+     */
+    int blockEnd(int k, int stride)
+    {
+        return (int) Math.min(k-Math.floorMod(origin+k, (long) stride)+stride, cells);
+    }
+
+    /**
+     * Returns the index in this grid of a cell from another grid on the same
+     * lattice.
+     *
+     * @param other the grid the cell is from
+     * @param k the index of the cell in the other grid
+     * @return the index of the same cell in this grid, which may be out of
+     * range if this grid does not contain it
+     */
+    long indexOf(GridAxis other, int k)
+    {
+        return other.origin+k-origin;
+    }
+
+    /**
+     *
+     * @param other the grid to compare against
+     * @return {@code true} if both grids use the same cells in data space,
+     * regardless of which of those cells they cover
+     */
+    boolean sameLattice(GridAxis other)
+    {
+        return other != null && resolution == other.resolution && direction == other.direction &&
+                Math.abs(cellSize-other.cellSize) <= cellSize*TOLERANCE;
+    }
+
+    /**
+     *
+     * @param other the grid to compare against
+     * @return {@code true} if both grids cover the exact same cells at the
+     * same pixel positions
+     */
+    boolean sameCells(GridAxis other)
+    {
+        return sameLattice(other) && origin == other.origin && cells == other.cells && pixelOffset == other.pixelOffset;
+    }
+}
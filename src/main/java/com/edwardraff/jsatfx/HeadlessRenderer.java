@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.awt.BasicStroke;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleFunction;
+import javafx.scene.paint.Color;
+import javax.imageio.ImageIO;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.Regressor;
+
+/**
+ * Renders classification and regression plots straight to images without
+ * starting the JavaFX toolkit, so that plots can be produced in batch jobs
+ * and on machines without a display. The decision surface, points, and
+ * regression curve are computed the same way as by {@link ClassificationPlot}
+ * and {@link RegressionPlot}, and the axes are drawn with the same ranges and
+ * tick spacing as {@link Plot} would use.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class HeadlessRenderer
+{
+    private static final int MARGIN_LEFT = 70;
+    private static final int MARGIN_BOTTOM = 45;
+    private static final int MARGIN_TOP = 10;
+    private static final int MARGIN_RIGHT = 15;
+    
+    private int width = 800;
+    private int height = 600;
+    private int resolution = 2;
+    private boolean hard = false;
+    private double backgroundOpacity = 0.8;
+    private int pointSize = 4;
+
+    /**
+     * Sets the size of the images to render, including the axes
+     * @param width the width in pixels
+     * @param height the height in pixels
+     */
+    public void setSize(int width, int height)
+    {
+        if(width <= MARGIN_LEFT+MARGIN_RIGHT || height <= MARGIN_TOP+MARGIN_BOTTOM)
+            throw new IllegalArgumentException("Image of " + width + "x" + height + " is too small to hold a plot");
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Sets the number of pixels along each side of a grid cell of the decision
+     * surface
+     * @param resolution the size of each cell in pixels
+     */
+    public void setResolution(int resolution)
+    {
+        if(resolution < 1)
+            throw new IllegalArgumentException("Resolution must be positive, not " + resolution);
+        this.resolution = resolution;
+    }
+
+    public int getResolution()
+    {
+        return resolution;
+    }
+
+    /**
+     * 
+     * @param hard {@code true} to draw only the most likely class at each
+     * point of the decision surface, {@code false} to blend the colors of all
+     * classes by their probabilities
+     */
+    public void setHardBoundaries(boolean hard)
+    {
+        this.hard = hard;
+    }
+
+    public boolean isHardBoundaries()
+    {
+        return hard;
+    }
+
+    /**
+     * 
+     * @param pointSize the size in pixels of each point drawn
+     */
+    public void setPointSize(int pointSize)
+    {
+        if(pointSize < 1)
+            throw new IllegalArgumentException("Point size must be positive, not " + pointSize);
+        this.pointSize = pointSize;
+    }
+
+    public int getPointSize()
+    {
+        return pointSize;
+    }
+    
+    /**
+     * Renders the decision surface of a classifier over the first two
+     * features of a data set, along with the points of the data set. 
+     * 
+     * @param d the data set to plot
+     * @param classifier the trained classifier to plot
+     * @return the rendered plot
+     */
+    public BufferedImage classification(ClassificationDataSet d, Classifier classifier)
+    {
+        PlotColumns cols = PlotColumns.of(d, 0, 1);
+        Frame frame = new Frame(cols);
+        int classes = d.getClassSize();
+        
+        GridAxis xGrid = GridAxis.of(frame.x0, frame.xPerPixel, frame.plotWidth, resolution);
+        GridAxis yGrid = GridAxis.of(frame.y0, frame.yPerPixel, frame.plotHeight, resolution);
+        DecisionSurface surface = new DecisionSurface(xGrid, yGrid, classes, 0);
+        //like Plot.classification, more than two features are shown as a slice through the mean
+        BatchClassifier model = d.getNumNumericalVars() > 2 ? ClassifierBatch.slice(classifier, Plot.meanPoint(d), new int[]{0, 1})
+                : BatchClassifier.of(classifier);
+        surface.compute(model, ForkJoinPool.commonPool(), () -> false);
+        
+        int[] pixels = new int[frame.plotWidth*frame.plotHeight];
+        new SurfaceRenderer(SurfaceRenderer.backgroundColors(classes), backgroundOpacity)
+                .render(surface, pixels, frame.plotWidth, frame.plotHeight, hard);
+        frame.drawPixels(pixels);
+        
+        PointLayer points = new PointLayer(cols.x, cols.y, cols.labels, Utils.getNcolors(classes));
+        frame.drawPoints(points, pixels);
+        frame.drawAxes(d.getNumericName(0), d.getNumericName(1));
+        return frame.finish();
+    }
+    
+    /**
+     * Renders the curve of a regressor over the first feature of a data set,
+     * along with the points of the data set.
+     * 
+     * @param d the data set to plot
+     * @param r the trained regressor to plot
+     * @return the rendered plot
+     */
+    public BufferedImage regression(RegressionDataSet d, Regressor r)
+    {
+        return regression(d, SampledCurve.Evaluator.of(r));
+    }
+    
+    /**
+     * Renders the curve of a function over the first feature of a data set,
+     * along with the points of the data set.
+     * 
+     * @param d the data set to plot
+     * @param r the function to plot
+     * @return the rendered plot
+     */
+    public BufferedImage regression(RegressionDataSet d, DoubleFunction<Double> r)
+    {
+        return regression(d, SampledCurve.Evaluator.of(r));
+    }
+    
+    private BufferedImage regression(RegressionDataSet d, SampledCurve.Evaluator f)
+    {
+        PlotColumns cols = PlotColumns.ofTarget(d, 0);
+        Frame frame = new Frame(cols);
+        
+        int[] pixels = new int[frame.plotWidth*frame.plotHeight];
+        PointLayer points = new PointLayer(cols.x, cols.y, Utils.getNcolors(1)[0]);
+        frame.drawPoints(points, pixels);
+        
+        SampledCurve curve = SampledCurve.adaptive(f, frame.x0, frame.xPerPixel, frame.yPerPixel, frame.plotWidth, ForkJoinPool.commonPool(), () -> false);
+        frame.drawCurve(curve, Color.BLUE);
+        frame.drawAxes(d.getNumericName(0), "Target");
+        return frame.finish();
+    }
+    
+    /**
+     * Writes an image to a file in the PNG format
+     * @param image the image to write
+     * @param file the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void writePNG(BufferedImage image, File file) throws IOException
+    {
+        if(!ImageIO.write(image, "png", file))
+            throw new IOException("No PNG writer is available");
+    }
+    
+    /**
+     * Renders a plot for each job and writes it to the job's file. Jobs are
+     * rendered in parallel, and the work of each job is itself spread across
+     * the common fork join pool.
+     * 
+     * @param jobs the plots to render
+     * @throws IOException if any file could not be written, after all other
+     * jobs have finished
+     */
+    public void renderAll(List<Job> jobs) throws IOException
+    {
+        List<IOException> failures = new ArrayList<>();
+        jobs.parallelStream().forEach(job -> 
+        {
+            try
+            {
+                writePNG(job.render(this), job.file);
+            }
+            catch (IOException ex)
+            {
+                synchronized(failures)
+                {
+                    failures.add(ex);
+                }
+            }
+        });
+        if(failures.isEmpty())
+            return;
+        IOException first = failures.get(0);
+        for(int i = 1; i < failures.size(); i++)
+            first.addSuppressed(failures.get(i));
+        throw first;
+    }
+    
+    /**
+     * A plot to render and the file to write it to
+     */
+    public static abstract class Job
+    {
+        private final File file;
+
+        private Job(File file)
+        {
+            this.file = file;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+        
+        abstract BufferedImage render(HeadlessRenderer renderer);
+        
+        /**
+         * 
+         * @param file the file to write the plot to
+         * @param d the data set to plot
+         * @param classifier the trained classifier to plot
+         * @return a job that renders a classification plot
+         */
+        public static Job classification(File file, ClassificationDataSet d, Classifier classifier)
+        {
+            return new Job(file)
+            {
+                @Override
+                BufferedImage render(HeadlessRenderer renderer)
+                {
+                    return renderer.classification(d, classifier);
+                }
+            };
+        }
+        
+        /**
+         * 
+         * @param file the file to write the plot to
+         * @param d the data set to plot
+         * @param r the trained regressor to plot
+         * @return a job that renders a regression plot
+         */
+        public static Job regression(File file, RegressionDataSet d, Regressor r)
+        {
+            return new Job(file)
+            {
+                @Override
+                BufferedImage render(HeadlessRenderer renderer)
+                {
+                    return renderer.regression(d, r);
+                }
+            };
+        }
+    }
+    
+    /**
+     * The image being rendered for one plot, and the mapping between data
+     * values and pixels of its plot area
+     */
+    private class Frame
+    {
+        final BufferedImage image;
+        final Graphics2D graphics;
+        final int plotWidth, plotHeight;
+        final double xMin, xMax, yMin, yMax;
+        final double xTick, yTick;
+        final double x0, xPerPixel, y0, yPerPixel;
+
+        /**
+         * Sets up the axes to cover the columns the same way
+         * {@link Plot#rangeToAxis(java.lang.String, double, double) } does
+         */
+        Frame(PlotColumns cols)
+        {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setColor(java.awt.Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            
+            plotWidth = width-MARGIN_LEFT-MARGIN_RIGHT;
+            plotHeight = height-MARGIN_TOP-MARGIN_BOTTOM;
+            
+            xTick = Plot.getTick(cols.xMin, cols.xMax, 10);
+            yTick = Plot.getTick(cols.yMin, cols.yMax, 10);
+            double xPad = (cols.xMax-cols.xMin)*0.05;
+            double yPad = (cols.yMax-cols.yMin)*0.05;
+            xMin = cols.xMin-xPad;
+            xMax = cols.xMax+xPad;
+            yMin = cols.yMin-yPad;
+            yMax = cols.yMax+yPad;
+            
+            x0 = xMin;
+            xPerPixel = (xMax-xMin)/plotWidth;
+            y0 = yMax;
+            yPerPixel = -(yMax-yMin)/plotHeight;
+        }
+        
+        /**
+         * Draws a buffer of ARGB pixels over the plot area
+         */
+        void drawPixels(int[] pixels)
+        {
+            BufferedImage layer = new BufferedImage(plotWidth, plotHeight, BufferedImage.TYPE_INT_ARGB);
+            layer.setRGB(0, 0, plotWidth, plotHeight, pixels, 0, plotWidth);
+            graphics.drawImage(layer, MARGIN_LEFT, MARGIN_TOP, null);
+        }
+        
+        /**
+         * Draws the points over the plot area, using the given buffer as
+         * scratch space
+         */
+        void drawPoints(PointLayer points, int[] pixels)
+        {
+            points.setPointSize(pointSize);
+            points.render(pixels, plotWidth, plotHeight, x0, xPerPixel, y0, yPerPixel);
+            drawPixels(pixels);
+        }
+        
+        void drawCurve(SampledCurve curve, Color color)
+        {
+            Graphics2D g = (Graphics2D) graphics.create(MARGIN_LEFT, MARGIN_TOP, plotWidth, plotHeight);
+            g.setColor(toAWT(color));
+            g.setStroke(new BasicStroke(1.5f));
+            Path2D.Double path = new Path2D.Double();
+            boolean connected = false;
+            for(int k = 0; k < curve.size(); k++)
+            {
+                double j = (curve.y[k]-y0)/yPerPixel;
+                if(!Double.isFinite(j))
+                    connected = false;
+                else if(connected)
+                    path.lineTo((curve.x[k]-x0)/xPerPixel, j);
+                else
+                {
+                    path.moveTo((curve.x[k]-x0)/xPerPixel, j);
+                    connected = true;
+                }
+            }
+            g.draw(path);
+            g.dispose();
+        }
+        
+        void drawAxes(String xName, String yName)
+        {
+            graphics.setColor(java.awt.Color.DARK_GRAY);
+            graphics.setStroke(new BasicStroke(1f));
+            graphics.drawRect(MARGIN_LEFT, MARGIN_TOP, plotWidth, plotHeight);
+            FontMetrics metrics = graphics.getFontMetrics();
+            
+            int xDecimals = decimals(xTick);
+            for(double v = Math.ceil(xMin/xTick)*xTick; v <= xMax; v += xTick)
+            {
+                int px = MARGIN_LEFT + (int) Math.round((v-x0)/xPerPixel);
+                int bottom = MARGIN_TOP+plotHeight;
+                graphics.drawLine(px, bottom, px, bottom+5);
+                String label = String.format("%." + xDecimals + "f", v);
+                graphics.drawString(label, px-metrics.stringWidth(label)/2, bottom+7+metrics.getAscent());
+            }
+            
+            int yDecimals = decimals(yTick);
+            for(double v = Math.ceil(yMin/yTick)*yTick; v <= yMax; v += yTick)
+            {
+                int py = MARGIN_TOP + (int) Math.round((v-y0)/yPerPixel);
+                graphics.drawLine(MARGIN_LEFT-5, py, MARGIN_LEFT, py);
+                String label = String.format("%." + yDecimals + "f", v);
+                graphics.drawString(label, MARGIN_LEFT-7-metrics.stringWidth(label), py+metrics.getAscent()/2);
+            }
+            
+            if(xName != null)
+            {
+                xName = xName.trim();
+                graphics.drawString(xName, MARGIN_LEFT+(plotWidth-metrics.stringWidth(xName))/2, height-4);
+            }
+            if(yName != null)
+            {
+                yName = yName.trim();
+                Graphics2D g = (Graphics2D) graphics.create();
+                g.translate(metrics.getAscent(), MARGIN_TOP+(plotHeight+metrics.stringWidth(yName))/2);
+                g.rotate(-Math.PI/2);
+                g.drawString(yName, 0, 0);
+                g.dispose();
+            }
+        }
+        
+        BufferedImage finish()
+        {
+            graphics.dispose();
+            return image;
+        }
+    }
+    
+    /**
+     * 
+     * @param tick the spacing between ticks on an axis
+     * @return the number of decimal places needed to tell the ticks apart
+     */
+    private static int decimals(double tick)
+    {
+        return Math.max(0, (int) -Math.floor(Math.log10(tick)));
+    }
+    
+    private static java.awt.Color toAWT(Color color)
+    {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(), (float) color.getOpacity());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.chart.Axis;
+import javafx.scene.shape.Shape;
+
+/**
+ * Creates real marker nodes for the few points of a {@link PointLayer} that
+ * are hovered over or selected, while the rest of the points stay stamped on
+ * the layer's canvas. The nodes are drawn larger than the stamped markers so
+ * they stand out, and can be given tooltips or styles like any other node.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class MarkerNodes
+{
+    /**
+     * How much larger than a stamped marker the nodes are drawn
+     */
+    private static final double SCALE = 1.5;
+    
+    private final PointLayer points;
+    private final Group group = new Group();
+    private int hovered = -1;
+    private Shape hoveredNode;
+    private int[] selected = new int[0];
+    private Shape[] selectedNodes = new Shape[0];
+    /**
+     * The mapping from values to pixels of the last layout
+     */
+    private double x0, xPerPixel, y0, yPerPixel;
+
+    MarkerNodes(PointLayer points)
+    {
+        this.points = points;
+        group.setMouseTransparent(true);
+        group.setManaged(false);
+    }
+
+    /**
+     * 
+     * @return the node holding the markers, to be placed above the canvas of
+     * the points
+     */
+    Node getNode()
+    {
+        return group;
+    }
+    
+    /**
+     * 
+     * @param i the index of the point the mouse is over, or -1 for none
+     */
+    void setHovered(int i)
+    {
+        if(i == hovered)
+            return;
+        if(hoveredNode != null)
+            group.getChildren().remove(hoveredNode);
+        hovered = i;
+        hoveredNode = i < 0 ? null : create(i);
+        if(hoveredNode != null)
+        {
+            group.getChildren().add(hoveredNode);
+            place(hoveredNode, i);
+        }
+    }
+
+    int getHovered()
+    {
+        return hovered;
+    }
+    
+    /**
+     * 
+     * @param rows the indices of the selected points, which are copied
+     */
+    void setSelected(int[] rows)
+    {
+        group.getChildren().removeAll(Arrays.asList(selectedNodes));
+        selected = rows.clone();
+        selectedNodes = new Shape[selected.length];
+        for(int j = 0; j < selected.length; j++)
+        {
+            selectedNodes[j] = create(selected[j]);
+            place(selectedNodes[j], selected[j]);
+        }
+        group.getChildren().addAll(0, Arrays.asList(selectedNodes));
+    }
+
+    int[] getSelected()
+    {
+        return selected.clone();
+    }
+    
+    private Shape create(int i)
+    {
+        Shape shape = Utils.getShape(points.label(i), points.getColor(points.label(i)));
+        shape.setScaleX(SCALE);
+        shape.setScaleY(SCALE);
+        return shape;
+    }
+
+    /**
+     * Moves the nodes to the current positions of their points, to be called
+     * whenever the axes change
+     *
+     * @param xAxis the x axis of the chart, which must be linear
+     * @param yAxis the y axis of the chart, which must be linear
+     */
+    void layout(Axis<? extends Number> xAxis, Axis<? extends Number> yAxis)
+    {
+        x0 = xAxis.getValueForDisplay(0).doubleValue();
+        xPerPixel = xAxis.getValueForDisplay(1).doubleValue()-x0;
+        y0 = yAxis.getValueForDisplay(0).doubleValue();
+        yPerPixel = yAxis.getValueForDisplay(1).doubleValue()-y0;
+        for(int j = 0; j < selected.length; j++)
+            place(selectedNodes[j], selected[j]);
+        if(hoveredNode != null)
+            place(hoveredNode, hovered);
+    }
+    
+    private void place(Shape node, int i)
+    {
+        if(xPerPixel == 0 || yPerPixel == 0)
+            return;
+        double px = (points.getX(i)-x0)/xPerPixel;
+        double py = (points.getY(i)-y0)/yPerPixel;
+        Bounds b = node.getLayoutBounds();
+        node.relocate(px-b.getWidth()/2, py-b.getHeight()/2);
+    }
+}
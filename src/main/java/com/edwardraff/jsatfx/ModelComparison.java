@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+
+/**
+ * Shows the decision surfaces of several classifiers trained on the same data
+ * set side by side, along with a panel showing where they disagree. <br>
+ * Every panel covers the same range, so the grid of cells evaluated and the
+ * layer of points drawn over each surface are built once and shared by all
+ * of them. The classifiers are evaluated at the same time on the common fork
+ * join pool, and each panel is shown as soon as its classifier is done.
+ * Like {@link Plot#classification(jsat.classifiers.ClassificationDataSet, jsat.classifiers.Classifier) },
+ * a data set with more than two features is shown as a slice through the
+ * first two with the others held at their mean.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class ModelComparison extends GridPane
+{
+    private final ClassificationDataSet d;
+    private final List<Classifier> classifiers;
+    private final PlotColumns cols;
+    private final double[] reference;
+    private final Color[] colors;
+    private final Canvas[] canvases;
+    private final Canvas disagreementCanvas;
+    
+    private int panelSize = 300;
+    private int resolution = 4;
+    private boolean hard = false;
+    private double backgroundOpacity = 0.8;
+    private Task<Void> pending;
+    /**
+     * The layer of points drawn on every panel, which only depends on the
+     * data and the panel size, so it is kept until the size changes
+     */
+    private volatile WritableImage pointImage;
+
+    /**
+     * Creates a comparison of the given classifiers, each labeled with the
+     * name of its class
+     * @param d the data set the classifiers were trained on
+     * @param classifiers the trained classifiers to compare
+     */
+    public ModelComparison(ClassificationDataSet d, List<Classifier> classifiers)
+    {
+        this.d = d;
+        this.classifiers = new ArrayList<>(classifiers);
+        this.cols = PlotColumns.of(d, 0, 1);
+        this.reference = d.getNumNumericalVars() > 2 ? Plot.meanPoint(d) : null;
+        this.colors = Utils.getNcolors(d.getClassSize());
+        
+        int panels = this.classifiers.size()+1;
+        int perRow = (int) Math.ceil(Math.sqrt(panels));
+        canvases = new Canvas[this.classifiers.size()];
+        for(int i = 0; i < canvases.length; i++)
+        {
+            canvases[i] = new Canvas(panelSize, panelSize);
+            add(panel(this.classifiers.get(i).getClass().getSimpleName(), canvases[i]), i % perRow, i / perRow);
+        }
+        disagreementCanvas = new Canvas(panelSize, panelSize);
+        add(panel("Disagreement", disagreementCanvas), canvases.length % perRow, canvases.length / perRow);
+        setHgap(8);
+        setVgap(8);
+        
+        refresh();
+    }
+    
+    private static BorderPane panel(String title, Canvas canvas)
+    {
+        BorderPane pane = new BorderPane();
+        pane.setTop(new Label(title));
+        pane.setCenter(canvas);
+        return pane;
+    }
+
+    /**
+     * 
+     * @param panelSize the width and height of each panel in pixels
+     */
+    public void setPanelSize(int panelSize)
+    {
+        if(panelSize < 16)
+            throw new IllegalArgumentException("Panels must be at least 16 pixels, not " + panelSize);
+        this.panelSize = panelSize;
+        refresh();
+    }
+
+    public int getPanelSize()
+    {
+        return panelSize;
+    }
+
+    /**
+     * 
+     * @param resolution the number of pixels along each side of a grid cell
+     */
+    public void setResolution(int resolution)
+    {
+        if(resolution < 1)
+            throw new IllegalArgumentException("Resolution must be positive, not " + resolution);
+        this.resolution = resolution;
+        refresh();
+    }
+
+    public int getResolution()
+    {
+        return resolution;
+    }
+
+    public void setHardBoundaries(boolean hard)
+    {
+        this.hard = hard;
+        refresh();
+    }
+
+    public boolean isHardBoundaries()
+    {
+        return hard;
+    }
+    
+    /**
+     * Evaluates every classifier again and redraws all panels. This should be
+     * called when any of the classifiers has been altered in place, such as
+     * by being re-trained.
+     */
+    public final void refresh()
+    {
+        if(pending != null)
+            pending.cancel(false);
+        
+        final int size = panelSize;
+        for(Canvas canvas : canvases)
+            clear(canvas, size);
+        clear(disagreementCanvas, size);
+        
+        //the range and grid shared by every panel, matching the axes Plot would make
+        double xPad = (cols.xMax-cols.xMin)*0.05;
+        double yPad = (cols.yMax-cols.yMin)*0.05;
+        final double x0 = cols.xMin-xPad;
+        final double xPerPixel = (cols.xMax-cols.xMin+2*xPad)/size;
+        final double y0 = cols.yMax+yPad;
+        final double yPerPixel = -(cols.yMax-cols.yMin+2*yPad)/size;
+        final GridAxis xGrid = GridAxis.of(x0, xPerPixel, size, resolution);
+        final GridAxis yGrid = GridAxis.of(y0, yPerPixel, size, resolution);
+        
+        final int classes = d.getClassSize();
+        final SurfaceRenderer renderer = new SurfaceRenderer(SurfaceRenderer.backgroundColors(classes), backgroundOpacity);
+        final boolean passHard = hard;
+        final List<Classifier> models = classifiers;
+        
+        final Task<Void> task = new Task<Void>()
+        {
+            @Override
+            protected Void call() throws Exception
+            {
+                final WritableImage points = pointLayer(size, x0, xPerPixel, y0, yPerPixel);
+                final DecisionSurface[] surfaces = new DecisionSurface[models.size()];
+                List<ForkJoinTask<?>> jobs = new ArrayList<>();
+                for(int i = 0; i < surfaces.length; i++)
+                {
+                    final int index = i;
+                    jobs.add(ForkJoinTask.adapt(() ->
+                    {
+                        Classifier classifier = models.get(index);
+                        BatchClassifier model = reference == null ? BatchClassifier.of(classifier)
+                                : ClassifierBatch.slice(classifier, reference, new int[]{0, 1});
+                        DecisionSurface surface = new DecisionSurface(xGrid, yGrid, classes, 0);
+                        if(!surface.compute(model, ForkJoinPool.commonPool(), this::isCancelled))
+                            return;
+                        surfaces[index] = surface;
+                        int[] pixels = new int[size*size];
+                        renderer.render(surface, pixels, size, size, passHard);
+                        show(canvases[index], toImage(pixels, size), points, this);
+                    }));
+                }
+                ForkJoinTask.invokeAll(jobs);
+                if(isCancelled())
+                    return null;
+                
+                int[] pixels = new int[size*size];
+                renderDisagreement(surfaces, pixels, size);
+                show(disagreementCanvas, toImage(pixels, size), points, this);
+                return null;
+            }
+        };
+        pending = task;
+        Utils.BACKGROUND.execute(task);
+    }
+    
+    /**
+     * Returns the layer of points drawn on every panel, rendering it again
+     * only if the panel size changed since it was last made. Called from the
+     * background task, so the O(n) pass over the points stays off of the FX
+     * thread.
+     */
+    private WritableImage pointLayer(int size, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        WritableImage image = pointImage;
+        if(image != null && image.getWidth() == size)
+            return image;
+        int[] pixels = new int[size*size];
+        new PointLayer(cols.x, cols.y, cols.labels, colors).render(pixels, size, size, x0, xPerPixel, y0, yPerPixel);
+        image = toImage(pixels, size);
+        pointImage = image;
+        return image;
+    }
+    
+    private static void clear(Canvas canvas, int size)
+    {
+        if(canvas.getWidth() != size || canvas.getHeight() != size)
+        {
+            canvas.setWidth(size);
+            canvas.setHeight(size);
+        }
+        canvas.getGraphicsContext2D().clearRect(0, 0, size, size);
+    }
+    
+    private static WritableImage toImage(int[] pixels, int size)
+    {
+        WritableImage image = new WritableImage(size, size);
+        image.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), pixels, 0, size);
+        return image;
+    }
+    
+    /**
+     * Draws a surface and the shared points on a canvas, from the FX thread,
+     * if the task that made it is still the current one
+     */
+    private void show(Canvas canvas, WritableImage surface, WritableImage points, Task<Void> task)
+    {
+        Platform.runLater(() ->
+        {
+            if(task != pending)
+                return;
+            GraphicsContext graphics = canvas.getGraphicsContext2D();
+            graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            graphics.drawImage(surface, 0, 0);
+            graphics.drawImage(points, 0, 0);
+            graphics.setStroke(Color.GRAY);
+            graphics.strokeRect(0.5, 0.5, canvas.getWidth()-1, canvas.getHeight()-1);
+        });
+    }
+    
+    /**
+     * Shades each cell by how much the classifiers disagree on it, from clear
+     * where they all predict the same class to dark red where no two agree.
+     * Surfaces that were not computed are skipped.
+     */
+    private static void renderDisagreement(DecisionSurface[] surfaces, int[] pixels, int size)
+    {
+        DecisionSurface first = null;
+        int count = 0;
+        for(DecisionSurface surface : surfaces)
+            if(surface != null)
+            {
+                if(first == null)
+                    first = surface;
+                count++;
+            }
+        if(count < 2)
+            return;
+        
+        final GridAxis xGrid = first.xGrid;
+        final GridAxis yGrid = first.yGrid;
+        int[] votes = new int[first.classes];
+        int[] line = new int[size];
+        for(int row = 0; row < first.rows(); row++)
+        {
+            for(int col = 0; col < first.cols(); col++)
+            {
+                Arrays.fill(votes, 0);
+                int most = 0;
+                for(DecisionSurface surface : surfaces)
+                    if(surface != null)
+                        most = Math.max(most, ++votes[surface.mostLikely(col, row)]);
+                //0 when all agree, 1 when every classifier differs
+                double disagreement = (count-most)/(double) (count-1);
+                int color = disagreement == 0 ? 0 : PointLayer.toARGB(0.6, 0.0, 0.0, 0.15+0.7*disagreement);
+                int xStart = Math.max(xGrid.pixel(col), 0);
+                int xEnd = Math.min(xGrid.pixel(col)+xGrid.resolution, size);
+                if(xEnd > xStart)
+                    Arrays.fill(line, xStart, xEnd, color);
+            }
+            int yStart = Math.max(yGrid.pixel(row), 0);
+            int yEnd = Math.min(yGrid.pixel(row)+yGrid.resolution, size);
+            for(int y = yStart; y < yEnd; y++)
+                System.arraycopy(line, 0, pixels, y*size, size);
+        }
+    }
+}
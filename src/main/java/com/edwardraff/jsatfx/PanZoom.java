@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import javafx.geometry.Point2D;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * Adds mouse wheel zoom and drag to pan to a chart with two
+ * {@link NumberAxis number axes}. The wheel zooms around the point under the
+ * cursor, dragging with the primary button pans, and a double click returns
+ * to the bounds the chart had before it was first zoomed or panned. <br>
+ * The handlers only change the bounds of the axes, so the cost of each event
+ * is one layout of the chart, which the charts of this package keep cheap by
+ * computing the expensive parts in the background.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class PanZoom
+{
+    /**
+     * The change in scroll delta that zooms by a factor of e
+     */
+    private static final double ZOOM_SPEED = 400;
+    
+    private final XYChart<?, ?> chart;
+    /**
+     * The bounds of the axes when the drag started, as x lower, x upper, y
+     * lower, y upper
+     */
+    private double[] dragStart;
+    private Point2D dragFrom;
+    /**
+     * The bounds of the axes before the first zoom or pan
+     */
+    private double[] home;
+    private boolean enabled = true;
+
+    private PanZoom(XYChart<?, ?> chart)
+    {
+        this.chart = chart;
+    }
+    
+    /**
+     * Installs pan and zoom handlers on a chart. They do nothing unless both
+     * axes of the chart are {@link NumberAxis number axes}.
+     *
+     * @param chart the chart to make interactive
+     * @return the object controlling the handlers
+     */
+    static PanZoom install(XYChart<?, ?> chart)
+    {
+        PanZoom panZoom = new PanZoom(chart);
+        chart.addEventHandler(ScrollEvent.SCROLL, panZoom::scrolled);
+        chart.addEventHandler(MouseEvent.MOUSE_PRESSED, panZoom::pressed);
+        chart.addEventHandler(MouseEvent.MOUSE_DRAGGED, panZoom::dragged);
+        chart.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> panZoom.dragStart = null);
+        chart.addEventHandler(MouseEvent.MOUSE_CLICKED, panZoom::clicked);
+        return panZoom;
+    }
+
+    void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        dragStart = null;
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+    
+    private NumberAxis xAxis()
+    {
+        return chart.getXAxis() instanceof NumberAxis ? (NumberAxis) chart.getXAxis() : null;
+    }
+    
+    private NumberAxis yAxis()
+    {
+        return chart.getYAxis() instanceof NumberAxis ? (NumberAxis) chart.getYAxis() : null;
+    }
+    
+    private boolean usable()
+    {
+        return enabled && xAxis() != null && yAxis() != null;
+    }
+    
+    /**
+     * 
+     * @return the display positions of a scene point along the x and y axis,
+     * or {@code null} if it is outside of the plot area
+     */
+    private Point2D toDisplay(double sceneX, double sceneY)
+    {
+        double px = xAxis().sceneToLocal(sceneX, sceneY).getX();
+        double py = yAxis().sceneToLocal(sceneX, sceneY).getY();
+        if(px < 0 || px > xAxis().getWidth() || py < 0 || py > yAxis().getHeight())
+            return null;
+        return new Point2D(px, py);
+    }
+    
+    private double[] bounds()
+    {
+        return new double[]{xAxis().getLowerBound(), xAxis().getUpperBound(), yAxis().getLowerBound(), yAxis().getUpperBound()};
+    }
+    
+    private void setBounds(double xLow, double xHigh, double yLow, double yHigh)
+    {
+        if(home == null)
+            home = bounds();
+        setBounds(xAxis(), xLow, xHigh);
+        setBounds(yAxis(), yLow, yHigh);
+    }
+    
+    private static void setBounds(NumberAxis axis, double low, double high)
+    {
+        if(!(high > low) || Double.isInfinite(high-low))
+            return;
+        axis.setAutoRanging(false);
+        axis.setLowerBound(low);
+        axis.setUpperBound(high);
+        axis.setTickUnit(Plot.getTick(low, high, 10));
+    }
+    
+    private void scrolled(ScrollEvent e)
+    {
+        if(!usable() || e.getDeltaY() == 0)
+            return;
+        Point2D at = toDisplay(e.getSceneX(), e.getSceneY());
+        if(at == null)
+            return;
+        e.consume();
+        double factor = Math.exp(-e.getDeltaY()/ZOOM_SPEED);
+        double x = xAxis().getValueForDisplay(at.getX()).doubleValue();
+        double y = yAxis().getValueForDisplay(at.getY()).doubleValue();
+        double[] b = bounds();
+        setBounds(x-(x-b[0])*factor, x+(b[1]-x)*factor, y-(y-b[2])*factor, y+(b[3]-y)*factor);
+    }
+    
+    private void pressed(MouseEvent e)
+    {
+        dragStart = null;
+        //drags with shift or the shortcut key held select points instead
+        if(!usable() || e.getButton() != MouseButton.PRIMARY || e.isShiftDown() || e.isShortcutDown())
+            return;
+        dragFrom = toDisplay(e.getSceneX(), e.getSceneY());
+        if(dragFrom != null)
+            dragStart = bounds();
+    }
+    
+    private void dragged(MouseEvent e)
+    {
+        if(dragStart == null || !usable())
+            return;
+        e.consume();
+        double px = xAxis().sceneToLocal(e.getSceneX(), e.getSceneY()).getX();
+        double py = yAxis().sceneToLocal(e.getSceneX(), e.getSceneY()).getY();
+        double dx = (px-dragFrom.getX())*(dragStart[1]-dragStart[0])/xAxis().getWidth();
+        double dy = (py-dragFrom.getY())*(dragStart[3]-dragStart[2])/yAxis().getHeight();
+        //dragging right moves the view left, dragging down moves it up
+        setBounds(dragStart[0]-dx, dragStart[1]-dx, dragStart[2]+dy, dragStart[3]+dy);
+    }
+    
+    private void clicked(MouseEvent e)
+    {
+        if(!usable() || home == null || e.getButton() != MouseButton.PRIMARY || e.getClickCount() != 2)
+            return;
+        e.consume();
+        double[] b = home;
+        home = null;
+        setBounds(xAxis(), b[0], b[1]);
+        setBounds(yAxis(), b[2], b[3]);
+    }
+}
@@ -17,10 +17,12 @@
 package com.edwardraff.jsatfx;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
 import javafx.scene.Node;
 import javafx.scene.chart.*;
 import javafx.scene.control.Accordion;
@@ -32,8 +34,6 @@ import javafx.scene.shape.Shape;
 import jsat.DataSet;
 import jsat.classifiers.ClassificationDataSet;
 import jsat.classifiers.Classifier;
-import jsat.classifiers.DataPoint;
-import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.Regressor;
@@ -44,19 +44,36 @@ import jsat.regression.Regressor;
  */
 public class Plot
 {
+    /**
+     * Data sets with more points than this are drawn with a
+     * {@link PointLayer} instead of a node per point
+     */
+    private static int highVolumeThreshold = 50000;
     
-    private static double getTick(Vec x)
+    /**
+     * Sets the number of points above which the plots created by this class
+     * switch from creating a node for every point to drawing all of the
+     * points onto a single canvas with a {@link PointLayer}.
+     *
+     * @param threshold the maximum number of points to draw as nodes
+     */
+    public static void setHighVolumeThreshold(int threshold)
     {
-        return getTick(x, 10);
+        if(threshold < 0)
+            throw new IllegalArgumentException("threshold must be non-negative, not " + threshold);
+        highVolumeThreshold = threshold;
     }
-    
-    
-    private static double getTick(Vec x, int number)
+
+    /**
+     * 
+     * @return the maximum number of points that will be drawn as nodes
+     */
+    public static int getHighVolumeThreshold()
     {
-        return getTick(x.min(), x.max(), number);
+        return highVolumeThreshold;
     }
     
-    private static double getTick(double min, double max, int number)
+    static double getTick(double min, double max, int number)
     {
         double range = max-min;
         
@@ -74,14 +91,26 @@ public class Plot
 
     protected static NumberAxis vecToAxis(String name, Vec xVals)
     {
-        double min = xVals.min();
-        double max = xVals.max();
+        return rangeToAxis(name, xVals.min(), xVals.max());
+    }
+    
+    /**
+     * Creates an axis that covers the given range of values with a little
+     * padding on each side
+     * @param name the name of the axis, may be {@code null}
+     * @param min the minimum value to show
+     * @param max the maximum value to show
+     * @return an axis for the range
+     */
+    protected static NumberAxis rangeToAxis(String name, double min, double max)
+    {
+        double tick = getTick(min, max, 10);
         double range = max-min;
         min -= range*0.05;
         max += range*0.05;
         NumberAxis xAxis = (name == null) ? 
-                new NumberAxis(min, max, getTick(xVals)) :
-                new NumberAxis(name.trim(), min, max, getTick(xVals));
+                new NumberAxis(min, max, tick) :
+                new NumberAxis(name.trim(), min, max, tick);
         return xAxis;
     }
     
@@ -106,18 +135,26 @@ public class Plot
      */
     public static ScatterChart<Number, Number> scatter(DataSet d, int x, int y)
     {
-        Vec xVals = d.getNumericColumn(x);
-        Vec yVals = d.getNumericColumn(y);
+        PlotColumns cols = PlotColumns.of(d, x, y);
         
-        NumberAxis xAxis = vecToAxis(d.getNumericName(x), xVals);
-        NumberAxis yAxis = vecToAxis(d.getNumericName(y), yVals);
+        NumberAxis xAxis = rangeToAxis(d.getNumericName(x), cols.xMin, cols.xMax);
+        NumberAxis yAxis = rangeToAxis(d.getNumericName(y), cols.yMin, cols.yMax);
+        
+        if(cols.size() > highVolumeThreshold)
+        {
+            PointLayer points = new PointLayer(cols.x, cols.y, Utils.getNcolors(1)[0]);
+            DenseScatterChart<Number, Number> sc = new DenseScatterChart<>(xAxis, yAxis, points);
+            sc.getPointPicker().setDataSet(d);
+            sc.setLegendVisible(false);
+            return sc;
+        }
         
         final ScatterChart<Number,Number> sc =  new ScatterChart<>(xAxis,yAxis);
         
         XYChart.Series<Number, Number> series = new XYChart.Series<>();
         
-        for(int i = 0; i < xVals.length(); i++)
-            series.getData().add(new XYChart.Data(xVals.get(i), yVals.get(i)));
+        for(int i = 0; i < cols.size(); i++)
+            series.getData().add(new XYChart.Data(cols.x[i], cols.y[i]));
         
         sc.getData().addAll(series);
         
@@ -151,13 +188,10 @@ public class Plot
      */
     public static ScatterChart<Number, Number> scatterC(ClassificationDataSet d, int x, int y)
     {
-        Vec xVals = d.getNumericColumn(0);
-        Vec yVals = d.getNumericColumn(1);
+        PlotColumns cols = PlotColumns.of(d, x, y);
         
-        NumberAxis xAxis = vecToAxis(d.getNumericName(0), xVals);
-        NumberAxis yAxis = vecToAxis(d.getNumericName(1), yVals);
-        
-        ScatterChart<Number,Number> sc =  new ScatterChart<>(xAxis,yAxis);
+        NumberAxis xAxis = rangeToAxis(d.getNumericName(x), cols.xMin, cols.xMax);
+        NumberAxis yAxis = rangeToAxis(d.getNumericName(y), cols.yMin, cols.yMax);
         
         List<XYChart.Series<Number, Number>> allSeries = new ArrayList<>();
         for(int i = 0; i < d.getClassSize(); i++)
@@ -166,8 +200,23 @@ public class Plot
             allSeries.get(i).setName(d.getPredicting().getOptionName(i));
         }
         
-        for(int i = 0; i < xVals.length(); i++)
-            allSeries.get(d.getDataPointCategory(i)).getData().add(new XYChart.Data(xVals.get(i), yVals.get(i)));
+        if(cols.size() > highVolumeThreshold)
+        {
+            Color[] colors = Utils.getNcolors(d.getClassSize());
+            PointLayer points = new PointLayer(cols.x, cols.y, cols.labels, colors);
+            DenseScatterChart<Number, Number> sc = new DenseScatterChart<>(xAxis, yAxis, points);
+            sc.getPointPicker().setDataSet(d);
+            //the series are left empty, and only used for the legend
+            sc.getData().addAll(allSeries);
+            setLegendShapes(sc, colors);
+            sc.setLegendVisible(true);
+            return sc;
+        }
+        
+        ScatterChart<Number,Number> sc =  new ScatterChart<>(xAxis,yAxis);
+        
+        for(int i = 0; i < cols.size(); i++)
+            allSeries.get(cols.labels[i]).getData().add(new XYChart.Data(cols.x[i], cols.y[i]));
             
         for (XYChart.Series<Number, Number> series : allSeries)
             sc.getData().addAll(series);
@@ -178,21 +227,57 @@ public class Plot
         return sc;
     }
     
+    /**
+     * Creates a scatter plot of every pair of features of a data set, laid out
+     * in a scrollable grid. This is much cheaper than a
+     * {@link #scatter(jsat.DataSet, int, int) } for every pair, as only the
+     * pairs in view are drawn.
+     * @param d the dataset to plot
+     * @return a scatter matrix of the data set
+     */
+    public static ScatterMatrix scatterMatrix(DataSet d)
+    {
+        return new ScatterMatrix(d);
+    }
+    
     /**
      * Creates a plot of a 2D scatterC problem, and visualizes the classifier's decision throughout the whole space. 
+     * If the data set has more than two features, a slice through the first
+     * two features is shown with every other feature held at its mean.
      * @param d the dataset to plot
      * @param classifier the trained classifier to visualize
      * @return a plot of the specified classifier and data
      */
     public static ClassificationPlot<Number, Number> classification(ClassificationDataSet d, Classifier classifier)
     {
-        Vec xVals = d.getNumericColumn(0);
-        Vec yVals = d.getNumericColumn(1);
+        return classification(d, classifier, 0, 1, d.getNumNumericalVars() > 2 ? meanPoint(d) : null);
+    }
+    
+    /**
+     * Creates a plot of two features of a classification problem, and
+     * visualizes the classifier's decision on a slice through the feature
+     * space where every other feature is held at the value of a reference
+     * point. 
+     * @param d the dataset to plot
+     * @param classifier the trained classifier to visualize
+     * @param x the feature for the x axis
+     * @param y the feature for the y axis
+     * @param reference the value of every feature for the slice, such as from
+     * {@link #meanPoint(jsat.DataSet) }, {@link #medianPoint(jsat.DataSet) }
+     * or {@link #rowPoint(jsat.DataSet, int) }. May be {@code null} if the
+     * classifier uses only the two plotted features. 
+     * @return a plot of the specified classifier and data
+     */
+    public static ClassificationPlot<Number, Number> classification(ClassificationDataSet d, Classifier classifier, int x, int y, double[] reference)
+    {
+        PlotColumns cols = PlotColumns.of(d, x, y);
         
-        NumberAxis xAxis = vecToAxis(d.getNumericName(0), xVals);
-        NumberAxis yAxis = vecToAxis(d.getNumericName(1), yVals);
+        NumberAxis xAxis = rangeToAxis(d.getNumericName(x), cols.xMin, cols.xMax);
+        NumberAxis yAxis = rangeToAxis(d.getNumericName(y), cols.yMin, cols.yMax);
         
         ClassificationPlot<Number, Number> sc = new ClassificationPlot<>(xAxis, yAxis, classifier);
+        if(reference != null)
+            sc.setSlice(x, y, reference);
         
         
         Color[] colors = Utils.getNcolors(d.getClassSize());
@@ -205,14 +290,13 @@ public class Plot
         }
         
         
-        for(int i = 0; i < xVals.length(); i++)
-        {
-            int cat = d.getDataPointCategory(i);
-            XYChart.Data datum = new XYChart.Data(xVals.get(i), yVals.get(i));
-            datum.setNode(Utils.getShape(cat, colors[cat]));
-            allSeries.get(cat).getData().add(datum);
-        }
-        
+        //markers are stamped from cached sprites rather than made into nodes,
+        //and the series are left empty, and only used for the legend
+        PointLayer points = new PointLayer(cols.x, cols.y, cols.labels, colors);
+        if(cols.size() <= highVolumeThreshold)
+            points.setMode(PointLayer.Mode.MARKERS);
+        sc.setPoints(points);
+        sc.getPointPicker().setDataSet(d);
         
         for (int i = 0; i < colors.length; i++)
         {
@@ -220,8 +304,96 @@ public class Plot
             sc.getData().add(series);
         }
         
+        setLegendShapes(sc, colors);
+        
+        sc.setLegendVisible(true);
+        
+        
+        return sc;
+    }
+    
+    /**
+     * Creates a side by side comparison of the decision surfaces of several
+     * classifiers trained on the same data, with a panel showing where they
+     * disagree.
+     * @param d the dataset to plot
+     * @param classifiers the trained classifiers to compare
+     * @return a comparison of the classifiers
+     */
+    public static ModelComparison comparison(ClassificationDataSet d, List<Classifier> classifiers)
+    {
+        return new ModelComparison(d, classifiers);
+    }
+    
+    /**
+     * 
+     * @param d the data set
+     * @return the mean value of every numeric feature of the data set
+     */
+    public static double[] meanPoint(DataSet d)
+    {
+        double[] mean = new double[d.getNumNumericalVars()];
+        int n = d.getSampleSize();
+        for(int i = 0; i < n; i++)
+        {
+            Vec v = d.getDataPoint(i).getNumericalValues();
+            for(int j = 0; j < mean.length; j++)
+                mean[j] += v.get(j);
+        }
+        for(int j = 0; j < mean.length; j++)
+            mean[j] /= Math.max(n, 1);
+        return mean;
+    }
+    
+    /**
+     * 
+     * @param d the data set
+     * @return the median value of every numeric feature of the data set
+     */
+    public static double[] medianPoint(DataSet d)
+    {
+        int n = d.getSampleSize();
+        double[][] columns = new double[d.getNumNumericalVars()][n];
+        for(int i = 0; i < n; i++)
+        {
+            Vec v = d.getDataPoint(i).getNumericalValues();
+            for(int j = 0; j < columns.length; j++)
+                columns[j][i] = v.get(j);
+        }
+        double[] median = new double[columns.length];
+        for(int j = 0; j < columns.length && n > 0; j++)
+        {
+            Arrays.sort(columns[j]);
+            median[j] = n % 2 == 1 ? columns[j][n/2] : (columns[j][n/2-1]+columns[j][n/2])/2;
+        }
+        return median;
+    }
+    
+    /**
+     * 
+     * @param d the data set
+     * @param row the index of a data point
+     * @return the value of every numeric feature of the data point
+     */
+    public static double[] rowPoint(DataSet d, int row)
+    {
+        Vec v = d.getDataPoint(row).getNumericalValues();
+        double[] point = new double[v.length()];
+        for(int j = 0; j < point.length; j++)
+            point[j] = v.get(j);
+        return point;
+    }
+    
+    /**
+     * Sets the graphic of each legend item of the chart to the shape and color
+     * used for the points of the matching class
+     * @param chart the chart to alter the legend of
+     * @param colors the color of each class
+     */
+    private static void setLegendShapes(XYChart<?, ?> chart, Color[] colors)
+    {
         //set the legen to correct colors
-        Set<Node> items = sc.lookupAll("Label.chart-legend-item");
+        Set<Node> items = chart.lookupAll("Label.chart-legend-item");
         
         int i = 0;
         for (Node item : items)
@@ -231,43 +403,94 @@ public class Plot
             label.setGraphic(shape);
             i++;
         }
-        
-        sc.setLegendVisible(true);
-        
-        
+    }
+    
+    /**
+     * Creates a scatter plot that shows the points of a stream as they
+     * arrive. The axes are fit to the range of the points retained by the
+     * stream.
+     *
+     * @param stream the stream of points to show
+     * @param xName the name of the x axis, may be {@code null}
+     * @param yName the name of the y axis, may be {@code null}
+     * @return a live scatter plot of the stream
+     */
+    public static DenseScatterChart<Number, Number> streamingScatter(PointStream stream, String xName, String yName)
+    {
+        NumberAxis xAxis = rangeToAxis(xName, 0, 1);
+        NumberAxis yAxis = rangeToAxis(yName, 0, 1);
+        DenseScatterChart<Number, Number> sc = new DenseScatterChart<>(xAxis, yAxis, stream.getPoints());
+        sc.setLegendVisible(false);
+        sc.setAnimated(false);
+        stream.attach(sc, xAxis, yAxis);
         return sc;
     }
     
+    /**
+     * Creates a regression plot that shows the points of a stream as they
+     * arrive, along with the curve of a regression function. When the model
+     * changes, {@link RegressionPlot#setRegressor(java.util.function.DoubleFunction) }
+     * can be called from {@link PointStream#setOnPulse(java.lang.Runnable) }
+     * to show a snapshot of it.
+     *
+     * @param stream the stream of points to show
+     * @param r the initial regression function, may be {@code null}
+     * @return a live regression plot of the stream
+     */
+    public static RegressionPlot<Number, Number> streamingRegression(PointStream stream, DoubleFunction<Double> r)
+    {
+        NumberAxis xAxis = rangeToAxis(null, 0, 1);
+        NumberAxis yAxis = rangeToAxis("Target", 0, 1);
+        RegressionPlot<Number, Number> chart = new RegressionPlot<>(xAxis, yAxis, r);
+        chart.setPoints(stream.getPoints());
+        chart.setLegendVisible(false);
+        chart.setAnimated(false);
+        stream.attach(chart, xAxis, yAxis);
+        return chart;
+    }
+    
     public static RegressionPlot<Number, Number> regression(RegressionDataSet d, Regressor r)
     {
-        return regression(d, (double value) -> r.regress(new DataPoint(DenseVector.toDenseVec(value))));
+        RegressionPlot<Number, Number> chart = regression(d, (DoubleFunction<Double>) null);
+        chart.setRegressor(r);
+        return chart;
+    }
+    
+    /**
+     * Creates a regression plot of a primitive function, which avoids boxing
+     * each value of the curve. This is not an overload of
+     * {@link #regression(jsat.regression.RegressionDataSet, java.util.function.DoubleFunction) }
+     * as a lambda would then match both.
+     *
+     * @param d the data set to plot
+     * @param r the function to draw
+     * @return a regression plot of the function
+     */
+    public static RegressionPlot<Number, Number> regressionFunction(RegressionDataSet d, DoubleUnaryOperator r)
+    {
+        RegressionPlot<Number, Number> chart = regression(d, (DoubleFunction<Double>) null);
+        chart.setRegressionFunction(r);
+        return chart;
     }
     
     public static RegressionPlot<Number, Number> regression(RegressionDataSet d, DoubleFunction<Double> r)
     {
-        Vec xVals = d.getNumericColumn(0);
-        Vec yVals = d.getTargetValues();
+        PlotColumns cols = PlotColumns.ofTarget(d, 0);
         
-        NumberAxis xAxis = vecToAxis(d.getNumericName(0), xVals);
-        NumberAxis yAxis = vecToAxis("Target", yVals);
+        NumberAxis xAxis = rangeToAxis(d.getNumericName(0), cols.xMin, cols.xMax);
+        NumberAxis yAxis = rangeToAxis("Target", cols.yMin, cols.yMax);
         
+        //sorted once, and the order is shared by the points and the residuals
+        cols.sortByX();
         RegressionPlot<Number, Number> chart = new RegressionPlot<>(xAxis, yAxis, r);
-        
-        List<XYChart.Data<Number, Number>> data = new ArrayList<>();
-        
-        //populating the series with data
-        for(int i = 0; i < xVals.length(); i++)
-        {
-            XYChart.Data datum = new XYChart.Data(xVals.get(i), yVals.get(i));
-            
-            data.add(datum);
-        }
-        data.sort((XYChart.Data<Number, Number> o1, XYChart.Data<Number, Number> o2) -> Double.compare(o1.getXValue().doubleValue(), o2.getXValue().doubleValue()));
-
-        XYChart.Series<Number,Number> series = new XYChart.Series<>();
-        for(XYChart.Data<Number, Number> i : data)
-            series.getData().add(i);
-        chart.getData().add(series);
+        chart.setTrainingData(cols.x, cols.y, true);
+        
+        PointLayer points = new PointLayer(cols.x, cols.y, Utils.getNcolors(1)[0]);
+        if(cols.size() <= highVolumeThreshold)
+            points.setMode(PointLayer.Mode.MARKERS);
+        chart.setPoints(points);
+        chart.getPointPicker().setRows(cols.rows());
+        chart.getPointPicker().setDataSet(d);
         
         
         chart.setLegendVisible(false);
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import jsat.DataSet;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+
+/**
+ * The values a 2D plot needs from a {@link DataSet}, pulled out into
+ * primitive arrays in a single pass over the data points. This avoids the
+ * intermediate copy made by {@link DataSet#getNumericColumn(int) } for every
+ * column, and computes the range of each axis in the same pass.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class PlotColumns
+{
+    final double[] x;
+    final double[] y;
+    /**
+     * The category of each point, or {@code null} if the data set was not a
+     * {@link ClassificationDataSet}
+     */
+    final int[] labels;
+    /**
+     * The row of the data set at each position of the arrays, or
+     * {@code null} if they are still in the order of the data set
+     */
+    private int[] rows;
+    double xMin = Double.POSITIVE_INFINITY;
+    double xMax = Double.NEGATIVE_INFINITY;
+    double yMin = Double.POSITIVE_INFINITY;
+    double yMax = Double.NEGATIVE_INFINITY;
+
+    private PlotColumns(int n, boolean labeled)
+    {
+        x = new double[n];
+        y = new double[n];
+        labels = labeled ? new int[n] : null;
+    }
+
+    /**
+     * Extracts two numeric features of a data set. If the data set is a
+     * {@link ClassificationDataSet}, the category of each point is extracted
+     * as well.
+     *
+     * @param d the data set
+     * @param xIndex the index of the feature for the x values
+     * @param yIndex the index of the feature for the y values
+     * @return the columns of the data set
+     */
+    static PlotColumns of(DataSet d, int xIndex, int yIndex)
+    {
+        ClassificationDataSet cds = d instanceof ClassificationDataSet ? (ClassificationDataSet) d : null;
+        PlotColumns cols = new PlotColumns(d.getSampleSize(), cds != null);
+        for(int i = 0; i < cols.x.length; i++)
+        {
+            Vec v = d.getDataPoint(i).getNumericalValues();
+            cols.set(i, v.get(xIndex), v.get(yIndex));
+            if(cds != null)
+                cols.labels[i] = cds.getDataPointCategory(i);
+        }
+        return cols;
+    }
+
+    /**
+     * Extracts one numeric feature of a regression data set as the x values,
+     * and the regression target as the y values.
+     *
+     * @param d the data set
+     * @param xIndex the index of the feature for the x values
+     * @return the columns of the data set
+     */
+    static PlotColumns ofTarget(RegressionDataSet d, int xIndex)
+    {
+        PlotColumns cols = new PlotColumns(d.getSampleSize(), false);
+        for(int i = 0; i < cols.x.length; i++)
+            cols.set(i, d.getDataPoint(i).getNumericalValues().get(xIndex), d.getTargetValue(i));
+        return cols;
+    }
+
+    private void set(int i, double xVal, double yVal)
+    {
+        x[i] = xVal;
+        y[i] = yVal;
+        xMin = Math.min(xMin, xVal);
+        xMax = Math.max(xMax, xVal);
+        yMin = Math.min(yMin, yVal);
+        yMax = Math.max(yMax, yVal);
+    }
+
+    /**
+     * Reorders the points so that the x values are in ascending order, with
+     * a single primitive sort. Does nothing if they have already been
+     * sorted.
+     */
+    void sortByX()
+    {
+        if(rows != null)
+            return;
+        rows = Utils.sortedOrder(x);
+        permute(x, rows);
+        permute(y, rows);
+        if(labels != null)
+        {
+            int[] copy = labels.clone();
+            for(int i = 0; i < rows.length; i++)
+                labels[i] = copy[rows[i]];
+        }
+    }
+    
+    /**
+     * 
+     * @param i a position in the arrays
+     * @return the row of the data set the point at the position came from
+     */
+    int row(int i)
+    {
+        return rows == null ? i : rows[i];
+    }
+    
+    /**
+     * 
+     * @return the row of the data set at each position of the arrays, or
+     * {@code null} if they are in the order of the data set
+     */
+    int[] rows()
+    {
+        return rows;
+    }
+    
+    private static void permute(double[] values, int[] order)
+    {
+        double[] copy = values.clone();
+        for(int i = 0; i < order.length; i++)
+            values[i] = copy[order[i]];
+    }
+
+    int size()
+    {
+        return x.length;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.Label;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts where the time of a plot goes: evaluating the model, rasterizing
+ * its output, and laying out the chart. Every counter is kept as a total
+ * since the last {@link #reset() reset}, and the model and raster work is
+ * also kept for the last frame alone, which is the work done between the
+ * plot first showing one piece of newly computed output and the next. A
+ * layout that only redraws what is cached does not end a frame. The
+ * counters may be updated from any thread, and are published to JavaFX
+ * properties on the FX thread at most once per pulse, so they can be bound to
+ * a dashboard. They can also be registered as an MBean to be watched over
+ * JMX.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class PlotMetrics implements PlotMetricsMBean
+{
+    private final AtomicLong modelCalls = new AtomicLong();
+    private final AtomicLong modelNanos = new AtomicLong();
+    private final AtomicLong rasterNanos = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong layoutPasses = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    /**
+     * The work of the frame in progress, moved to the last frame counters
+     * when it is shown
+     */
+    private final AtomicLong frameModelCalls = new AtomicLong();
+    private final AtomicLong frameModelNanos = new AtomicLong();
+    private final AtomicLong frameRasterNanos = new AtomicLong();
+    private final AtomicLong lastFrameModelCalls = new AtomicLong();
+    private final AtomicLong lastFrameModelNanos = new AtomicLong();
+    private final AtomicLong lastFrameRasterNanos = new AtomicLong();
+    /**
+     * Set while a publish to the properties is waiting to run on the FX
+     * thread
+     */
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    
+    private final ReadOnlyLongWrapper modelCallsProperty = new ReadOnlyLongWrapper(this, "modelCalls");
+    private final ReadOnlyLongWrapper modelNanosProperty = new ReadOnlyLongWrapper(this, "modelNanos");
+    private final ReadOnlyLongWrapper rasterNanosProperty = new ReadOnlyLongWrapper(this, "rasterNanos");
+    private final ReadOnlyLongWrapper cacheHitsProperty = new ReadOnlyLongWrapper(this, "cacheHits");
+    private final ReadOnlyLongWrapper cacheMissesProperty = new ReadOnlyLongWrapper(this, "cacheMisses");
+    private final ReadOnlyLongWrapper layoutPassesProperty = new ReadOnlyLongWrapper(this, "layoutPasses");
+    private final ReadOnlyLongWrapper framesProperty = new ReadOnlyLongWrapper(this, "frames");
+    private final ReadOnlyLongWrapper lastFrameModelCallsProperty = new ReadOnlyLongWrapper(this, "lastFrameModelCalls");
+    private final ReadOnlyLongWrapper lastFrameModelNanosProperty = new ReadOnlyLongWrapper(this, "lastFrameModelNanos");
+    private final ReadOnlyLongWrapper lastFrameRasterNanosProperty = new ReadOnlyLongWrapper(this, "lastFrameRasterNanos");
+    private final ReadOnlyStringWrapper summary = new ReadOnlyStringWrapper(this, "summary", "");
+    
+    private ObjectName registeredAs;
+
+    @Override
+    public long getModelCalls()
+    {
+        return modelCalls.get();
+    }
+
+    @Override
+    public long getModelNanos()
+    {
+        return modelNanos.get();
+    }
+
+    @Override
+    public long getRasterNanos()
+    {
+        return rasterNanos.get();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public long getLayoutPasses()
+    {
+        return layoutPasses.get();
+    }
+
+    @Override
+    public long getFrames()
+    {
+        return frames.get();
+    }
+
+    @Override
+    public long getLastFrameModelCalls()
+    {
+        return lastFrameModelCalls.get();
+    }
+
+    @Override
+    public long getLastFrameModelNanos()
+    {
+        return lastFrameModelNanos.get();
+    }
+
+    @Override
+    public long getLastFrameRasterNanos()
+    {
+        return lastFrameRasterNanos.get();
+    }
+
+    @Override
+    public void reset()
+    {
+        modelCalls.set(0);
+        modelNanos.set(0);
+        rasterNanos.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        layoutPasses.set(0);
+        frames.set(0);
+        frameModelCalls.set(0);
+        frameModelNanos.set(0);
+        frameRasterNanos.set(0);
+        lastFrameModelCalls.set(0);
+        lastFrameModelNanos.set(0);
+        lastFrameRasterNanos.set(0);
+        changed();
+    }
+    
+    public ReadOnlyLongProperty modelCallsProperty()
+    {
+        return modelCallsProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty modelNanosProperty()
+    {
+        return modelNanosProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty rasterNanosProperty()
+    {
+        return rasterNanosProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty cacheHitsProperty()
+    {
+        return cacheHitsProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty cacheMissesProperty()
+    {
+        return cacheMissesProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty layoutPassesProperty()
+    {
+        return layoutPassesProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty framesProperty()
+    {
+        return framesProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty lastFrameModelCallsProperty()
+    {
+        return lastFrameModelCallsProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty lastFrameModelNanosProperty()
+    {
+        return lastFrameModelNanosProperty.getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty lastFrameRasterNanosProperty()
+    {
+        return lastFrameRasterNanosProperty.getReadOnlyProperty();
+    }
+    
+    /**
+     * 
+     * @return a short, human readable summary of all the metrics, as shown by
+     * the overlay of a plot
+     */
+    public ReadOnlyStringProperty summaryProperty()
+    {
+        return summary.getReadOnlyProperty();
+    }
+    
+    /**
+     * Registers these metrics with the platform MBean server, replacing any
+     * earlier registration of them.
+     *
+     * @param name the name of the plot, used as the {@code name} key of the
+     * object name
+     * @throws JMException if the metrics could not be registered
+     */
+    public synchronized void register(String name) throws JMException
+    {
+        unregister();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("com.edwardraff.jsatfx:type=PlotMetrics,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        registeredAs = objectName;
+    }
+    
+    /**
+     * Removes these metrics from the platform MBean server, if they were
+     * registered
+     * @throws JMException if the metrics could not be unregistered
+     */
+    public synchronized void unregister() throws JMException
+    {
+        if(registeredAs == null)
+            return;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        registeredAs = null;
+    }
+    
+    /**
+     * 
+     * @return a label that always shows the {@link #summaryProperty() summary}
+     * of these metrics, to be placed over a plot
+     */
+    Label createOverlay()
+    {
+        Label label = new Label(summary.get());
+        label.setStyle("-fx-background-color: rgba(255, 255, 255, 0.7); -fx-padding: 2 6 2 6; -fx-font-size: 10;");
+        label.setMouseTransparent(true);
+        summary.addListener((ObservableValue<? extends String> obs, String old, String now) -> label.setText(now));
+        return label;
+    }
+    
+    void modelEvaluated(long calls, long nanos)
+    {
+        modelCalls.addAndGet(calls);
+        modelNanos.addAndGet(nanos);
+        frameModelCalls.addAndGet(calls);
+        frameModelNanos.addAndGet(nanos);
+        changed();
+    }
+    
+    void rasterized(long nanos)
+    {
+        rasterNanos.addAndGet(nanos);
+        frameRasterNanos.addAndGet(nanos);
+        changed();
+    }
+    
+    /**
+     * Ends the frame in progress, making its work the last frame's. Called
+     * by a plot each time it first shows newly computed output.
+     */
+    void frameShown()
+    {
+        lastFrameModelCalls.set(frameModelCalls.getAndSet(0));
+        lastFrameModelNanos.set(frameModelNanos.getAndSet(0));
+        lastFrameRasterNanos.set(frameRasterNanos.getAndSet(0));
+        frames.incrementAndGet();
+        changed();
+    }
+    
+    void layoutPass(boolean cacheHit)
+    {
+        layoutPasses.incrementAndGet();
+        (cacheHit ? cacheHits : cacheMisses).incrementAndGet();
+        changed();
+    }
+    
+    /**
+     * 
+     * @param classifier the classifier to count the calls of
+     * @return a classifier that counts its calls and their time in these
+     * metrics
+     */
+    BatchClassifier counting(BatchClassifier classifier)
+    {
+        return (double[] coords, int dimensions, int count, double[] probs, int classes) ->
+        {
+            long start = System.nanoTime();
+            classifier.classify(coords, dimensions, count, probs, classes);
+            modelEvaluated(count, System.nanoTime()-start);
+        };
+    }
+    
+    /**
+     * 
+     * @param f the function to count the calls of
+     * @return a function that counts its calls and their time in these
+     * metrics
+     */
+    SampledCurve.Evaluator counting(SampledCurve.Evaluator f)
+    {
+        return (double[] x, double[] y, int from, int to) ->
+        {
+            long start = System.nanoTime();
+            f.evaluate(x, y, from, to);
+            modelEvaluated(to-from, System.nanoTime()-start);
+        };
+    }
+    
+    /**
+     * Schedules the properties to be updated on the FX thread, unless an
+     * update is already waiting
+     */
+    private void changed()
+    {
+        if(publishing.compareAndSet(false, true))
+            Platform.runLater(this::publish);
+    }
+    
+    private void publish()
+    {
+        publishing.set(false);
+        modelCallsProperty.set(getModelCalls());
+        modelNanosProperty.set(getModelNanos());
+        rasterNanosProperty.set(getRasterNanos());
+        cacheHitsProperty.set(getCacheHits());
+        cacheMissesProperty.set(getCacheMisses());
+        layoutPassesProperty.set(getLayoutPasses());
+        framesProperty.set(getFrames());
+        lastFrameModelCallsProperty.set(getLastFrameModelCalls());
+        lastFrameModelNanosProperty.set(getLastFrameModelNanos());
+        lastFrameRasterNanosProperty.set(getLastFrameRasterNanos());
+        summary.set(String.format("last frame: %,d calls, %.1f ms model, %.1f ms raster%n"
+                + "model: %,d calls, %.1f ms%nraster: %.1f ms%ncache: %,d hits, %,d misses%nlayouts: %,d, frames: %,d",
+                getLastFrameModelCalls(), getLastFrameModelNanos()/1e6, getLastFrameRasterNanos()/1e6,
+                getModelCalls(), getModelNanos()/1e6, getRasterNanos()/1e6, getCacheHits(), getCacheMisses(), getLayoutPasses(), getFrames()));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+/**
+ * The management interface of {@link PlotMetrics}, so that the metrics of a
+ * plot can be watched over JMX. Unless they are for the last frame, the
+ * metrics are totals since the last {@link #reset() reset}.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public interface PlotMetricsMBean
+{
+    /**
+     * 
+     * @return the number of points the model was evaluated on
+     */
+    long getModelCalls();
+    
+    /**
+     * 
+     * @return the time spent evaluating the model in nanoseconds, summed over
+     * every thread that evaluated it
+     */
+    long getModelNanos();
+    
+    /**
+     * 
+     * @return the time spent turning model output into pixels or paths, in
+     * nanoseconds
+     */
+    long getRasterNanos();
+    
+    /**
+     * 
+     * @return the number of layout passes that did not start an evaluation of
+     * the model, as the cached output or one already being computed covered
+     * them
+     */
+    long getCacheHits();
+    
+    /**
+     * 
+     * @return the number of layout passes where the model had to be evaluated
+     */
+    long getCacheMisses();
+    
+    /**
+     * 
+     * @return the number of layout passes of the plot
+     */
+    long getLayoutPasses();
+    
+    /**
+     * 
+     * @return the number of times the plot showed newly computed output
+     */
+    long getFrames();
+    
+    /**
+     * 
+     * @return the number of points the model was evaluated on for the last
+     * frame shown, counted since the frame before it
+     */
+    long getLastFrameModelCalls();
+    
+    /**
+     * 
+     * @return the time spent evaluating the model for the last frame shown,
+     * in nanoseconds summed over every thread that evaluated it
+     */
+    long getLastFrameModelNanos();
+    
+    /**
+     * 
+     * @return the time spent rasterizing the last frame shown, in
+     * nanoseconds
+     */
+    long getLastFrameRasterNanos();
+    
+    /**
+     * Sets every metric back to zero
+     */
+    void reset();
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the coordinates of a set of points, for finding the
+ * points near a position or inside of a region without looking at every
+ * point. The grid is sized to hold a few points per cell on average, and the
+ * points of each cell are stored together in one array, so a query only
+ * touches the cells that overlap it. Points with a non-finite coordinate are
+ * left out.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class PointIndex
+{
+    /**
+     * The average number of points per cell the grid is sized for
+     */
+    private static final int POINTS_PER_CELL = 4;
+    /**
+     * The most cells along each side of the grid
+     */
+    private static final int MAX_SIDE = 2048;
+
+    private final double[] x;
+    private final double[] y;
+    /**
+     * The number of points indexed, from the start of the arrays
+     */
+    final int size;
+    private final double xMin, yMin;
+    private final double cellWidth, cellHeight;
+    private final int columns, rows;
+    /**
+     * The points of cell {@code c} are {@code points[cellStart[c]]} up to
+     * {@code points[cellStart[c+1]]}
+     */
+    private final int[] cellStart;
+    private final int[] points;
+
+    /**
+     * Builds an index over the first {@code size} points of the arrays,
+     * which are used directly and not copied.
+     *
+     * @param x the x value of each point
+     * @param y the y value of each point
+     * @param size the number of points to index
+     */
+    PointIndex(double[] x, double[] y, int size)
+    {
+        this.x = x;
+        this.y = y;
+        this.size = size;
+        double xLow = Double.POSITIVE_INFINITY, xHigh = Double.NEGATIVE_INFINITY;
+        double yLow = Double.POSITIVE_INFINITY, yHigh = Double.NEGATIVE_INFINITY;
+        int finite = 0;
+        for(int i = 0; i < size; i++)
+            if(finite(i))
+            {
+                xLow = Math.min(xLow, x[i]);
+                xHigh = Math.max(xHigh, x[i]);
+                yLow = Math.min(yLow, y[i]);
+                yHigh = Math.max(yHigh, y[i]);
+                finite++;
+            }
+        if(finite == 0)
+            xLow = xHigh = yLow = yHigh = 0;
+        int side = (int) Math.max(1, Math.min(MAX_SIDE, Math.ceil(Math.sqrt(finite/(double) POINTS_PER_CELL))));
+        xMin = xLow;
+        yMin = yLow;
+        columns = side;
+        rows = side;
+        //a degenerate range still gets cells of a positive size
+        cellWidth = xHigh > xLow ? (xHigh-xLow)/columns*(1+1e-9) : 1;
+        cellHeight = yHigh > yLow ? (yHigh-yLow)/rows*(1+1e-9) : 1;
+
+        //counting sort of the points by their cell
+        cellStart = new int[columns*rows+1];
+        int[] cellOf = new int[size];
+        for(int i = 0; i < size; i++)
+        {
+            cellOf[i] = finite(i) ? column(x[i])+row(y[i])*columns : -1;
+            if(cellOf[i] >= 0)
+                cellStart[cellOf[i]+1]++;
+        }
+        for(int c = 0; c < columns*rows; c++)
+            cellStart[c+1] += cellStart[c];
+        points = new int[finite];
+        int[] next = Arrays.copyOf(cellStart, columns*rows);
+        for(int i = 0; i < size; i++)
+            if(cellOf[i] >= 0)
+                points[next[cellOf[i]]++] = i;
+    }
+
+    private boolean finite(int i)
+    {
+        return Double.isFinite(x[i]) && Double.isFinite(y[i]);
+    }
+
+    private int column(double v)
+    {
+        return Math.max(0, Math.min(columns-1, (int) Math.floor((v-xMin)/cellWidth)));
+    }
+
+    private int row(double v)
+    {
+        return Math.max(0, Math.min(rows-1, (int) Math.floor((v-yMin)/cellHeight)));
+    }
+
+    /**
+     * Finds the closest point to a position, where distances along each axis
+     * are scaled so that they can be measured in pixels.
+     *
+     * @param qx the x value of the position
+     * @param qy the y value of the position
+     * @param xPerPixel the change in x value per pixel
+     * @param yPerPixel the change in y value per pixel
+     * @param radius the greatest distance, in pixels, to look for a point
+     * @return the index of the closest point, or -1 if none is within
+     * {@code radius}
+     */
+    int nearest(double qx, double qy, double xPerPixel, double yPerPixel, double radius)
+    {
+        double xr = Math.abs(radius*xPerPixel), yr = Math.abs(radius*yPerPixel);
+        if(!(qx+xr >= xMin && qy+yr >= yMin && qx-xr <= xMin+columns*cellWidth && qy-yr <= yMin+rows*cellHeight))
+            return -1;
+        int closest = -1;
+        double best = radius*radius;
+        for(int r = row(qy-yr); r <= row(qy+yr); r++)
+            for(int c = column(qx-xr); c <= column(qx+xr); c++)
+            {
+                int cell = r*columns+c;
+                for(int k = cellStart[cell]; k < cellStart[cell+1]; k++)
+                {
+                    int i = points[k];
+                    double dx = (x[i]-qx)/xPerPixel, dy = (y[i]-qy)/yPerPixel;
+                    double dist = dx*dx+dy*dy;
+                    if(dist <= best)
+                    {
+                        best = dist;
+                        closest = i;
+                    }
+                }
+            }
+        return closest;
+    }
+
+    /**
+     *
+     * @return the indices of the points inside of the rectangle, in
+     * ascending order
+     */
+    int[] inRectangle(double x0, double y0, double x1, double y1)
+    {
+        double left = Math.min(x0, x1), right = Math.max(x0, x1);
+        double bottom = Math.min(y0, y1), top = Math.max(y0, y1);
+        return collect(left, bottom, right, top, (double px, double py) -> px >= left && px <= right && py >= bottom && py <= top);
+    }
+
+    /**
+     * Finds the points inside of a polygon, using the even-odd rule
+     *
+     * @param px the x value of each vertex of the polygon
+     * @param py the y value of each vertex of the polygon
+     * @return the indices of the points inside of the polygon, in ascending
+     * order
+     */
+    int[] inPolygon(double[] px, double[] py)
+    {
+        if(px.length < 3)
+            return new int[0];
+        double left = Double.POSITIVE_INFINITY, right = Double.NEGATIVE_INFINITY;
+        double bottom = Double.POSITIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+        for(int v = 0; v < px.length; v++)
+        {
+            left = Math.min(left, px[v]);
+            right = Math.max(right, px[v]);
+            bottom = Math.min(bottom, py[v]);
+            top = Math.max(top, py[v]);
+        }
+        return collect(left, bottom, right, top, (double qx, double qy) ->
+        {
+            boolean inside = false;
+            for(int a = 0, b = px.length-1; a < px.length; b = a++)
+                if((py[a] > qy) != (py[b] > qy) && qx < (px[b]-px[a])*(qy-py[a])/(py[b]-py[a])+px[a])
+                    inside = !inside;
+            return inside;
+        });
+    }
+
+    private interface Region
+    {
+        boolean contains(double x, double y);
+    }
+
+    private int[] collect(double left, double bottom, double right, double top, Region region)
+    {
+        if(!(right >= xMin && top >= yMin && left <= xMin+columns*cellWidth && bottom <= yMin+rows*cellHeight))
+            return new int[0];
+        int[] found = new int[16];
+        int count = 0;
+        for(int r = row(bottom); r <= row(top); r++)
+            for(int c = column(left); c <= column(right); c++)
+            {
+                int cell = r*columns+c;
+                for(int k = cellStart[cell]; k < cellStart[cell+1]; k++)
+                {
+                    int i = points[k];
+                    if(!region.contains(x[i], y[i]))
+                        continue;
+                    if(count == found.length)
+                        found = Arrays.copyOf(found, count*2);
+                    found[count++] = i;
+                }
+            }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+}
@@ -0,0 +1,632 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.Axis;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * A PointLayer draws a large number of points onto a single canvas, reading
+ * them directly from primitive arrays. Unlike the series of an
+ * {@link javafx.scene.chart.XYChart}, no {@link javafx.scene.chart.XYChart.Data}
+ * or {@link Node} is created per point, so it remains usable with millions of
+ * points. <br>
+ * The points can be drawn individually, with at most one point drawn per
+ * pixel, as the same markers a chart would use for each class, or
+ * aggregated into a 2D histogram or hexagonal bins where the opacity of each
+ * bin shows the number of points in it.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class PointLayer
+{
+    /**
+     * How the points of a layer are drawn
+     */
+    public enum Mode
+    {
+        /**
+         * Every point is drawn as a small square, skipping points that fall
+         * on a pixel another point was already drawn on
+         */
+        POINTS,
+        /**
+         * Every point is drawn as the marker of its label, the same shapes
+         * {@link Utils#getShape(int, javafx.scene.paint.Color) } creates,
+         * by stamping a pre-rendered sprite of the marker. Points that fall
+         * on a pixel another point was already drawn on are skipped.
+         */
+        MARKERS,
+        /**
+         * Points are counted in square bins
+         */
+        HISTOGRAM,
+        /**
+         * Points are counted in hexagonal bins
+         */
+        HEXBIN,
+    }
+    
+    private static final double SQRT3 = Math.sqrt(3);
+
+    private final double[] x;
+    private final double[] y;
+    private final int[] labels;
+    /**
+     * The number of points at the start of the arrays that are drawn
+     */
+    private int count;
+    private final Color[] colors;
+    /**
+     * The squared RGB components of each color, used to blend the colors of
+     * the points in a bin
+     */
+    private final double[] linearRGB;
+    private Mode mode = Mode.POINTS;
+    private int pointSize = 3;
+    private int binSize = 8;
+
+    /**
+     * Created on first use, so that a layer can be rendered without the
+     * JavaFX toolkit
+     */
+    private Canvas canvas;
+    private WritableImage image;
+    private int[] pixels;
+    /**
+     * Marks the pixels a point has already been drawn on in
+     * {@link Mode#POINTS} mode
+     */
+    private boolean[] seen;
+    /**
+     * The mapping from pixels to values, and the canvas size, used for the
+     * last render. 
+     */
+    private double[] lastMapping;
+    /**
+     * The spatial index of the points, built when first queried and dropped
+     * when the points change
+     */
+    private PointIndex index;
+
+    /**
+     * Creates a new layer of points that all have the same color
+     * @param x the x value of each point
+     * @param y the y value of each point
+     * @param color the color to draw the points in
+     */
+    public PointLayer(double[] x, double[] y, Color color)
+    {
+        this(x, y, null, new Color[]{color});
+    }
+
+    /**
+     * Creates a new layer of labeled points. The arrays are used directly,
+     * and are not copied.
+     *
+     * @param x the x value of each point
+     * @param y the y value of each point
+     * @param labels the label of each point, used as an index into
+     * {@code colors}. May be {@code null} if there is only one color.
+     * @param colors the color for each label
+     */
+    public PointLayer(double[] x, double[] y, int[] labels, Color[] colors)
+    {
+        if(x.length != y.length || (labels != null && labels.length != x.length))
+            throw new IllegalArgumentException("x, y and labels must all have the same length");
+        this.x = x;
+        this.y = y;
+        this.labels = labels;
+        this.count = x.length;
+        this.colors = colors;
+        this.linearRGB = new double[colors.length*3];
+        for(int k = 0; k < colors.length; k++)
+        {
+            linearRGB[k*3] = colors[k].getRed()*colors[k].getRed();
+            linearRGB[k*3+1] = colors[k].getGreen()*colors[k].getGreen();
+            linearRGB[k*3+2] = colors[k].getBlue()*colors[k].getBlue();
+        }
+    }
+    
+    /**
+     * 
+     * @return the number of points in this layer
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Sets how many points, from the start of the arrays, are drawn. This
+     * lets the arrays be filled over time, such as by a {@link PointStream}.
+     * @param count the number of points to draw
+     */
+    void setCount(int count)
+    {
+        this.count = count;
+        invalidate();
+    }
+
+    /**
+     * Forces the points to be drawn again on the next layout, for when the
+     * contents of the arrays have been changed.
+     */
+    void invalidate()
+    {
+        lastMapping = null;
+        index = null;
+    }
+    
+    private PointIndex index()
+    {
+        if(index == null || index.size != count)
+            index = new PointIndex(x, y, count);
+        return index;
+    }
+
+    /**
+     * 
+     * @return the node the points are drawn on
+     */
+    public Node getNode()
+    {
+        if(canvas == null)
+        {
+            canvas = new Canvas(1, 1);
+            canvas.setMouseTransparent(true);
+        }
+        return canvas;
+    }
+
+    public void setMode(Mode mode)
+    {
+        this.mode = mode;
+        lastMapping = null;
+    }
+
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the width, in pixels, of the square drawn for each point in
+     * {@link Mode#POINTS} mode
+     * @param pointSize the size of a point
+     */
+    public void setPointSize(int pointSize)
+    {
+        if(pointSize < 1)
+            throw new IllegalArgumentException("pointSize must be positive, not " + pointSize);
+        this.pointSize = pointSize;
+        lastMapping = null;
+    }
+
+    public int getPointSize()
+    {
+        return pointSize;
+    }
+
+    /**
+     * Sets the size, in pixels, of the bins used in {@link Mode#HISTOGRAM}
+     * and {@link Mode#HEXBIN} mode. For hexagonal bins this is the distance
+     * from the center of a bin to its corners.
+     *
+     * @param binSize the size of a bin
+     */
+    public void setBinSize(int binSize)
+    {
+        if(binSize < 1)
+            throw new IllegalArgumentException("binSize must be positive, not " + binSize);
+        this.binSize = binSize;
+        lastMapping = null;
+    }
+
+    public int getBinSize()
+    {
+        return binSize;
+    }
+
+    /**
+     * Positions the canvas over the plot area of a chart, and redraws the
+     * points if the axes or size of the chart have changed. This should be
+     * called by the chart's {@code layoutPlotChildren} method.
+     *
+     * @param xAxis the x axis of the chart, which must be linear
+     * @param yAxis the y axis of the chart, which must be linear
+     */
+    void layout(Axis<? extends Number> xAxis, Axis<? extends Number> yAxis)
+    {
+        int width = (int) Math.ceil(xAxis.getWidth());
+        int height = (int) Math.ceil(yAxis.getHeight());
+        getNode().relocate(0, 0);
+        
+        double x0 = xAxis.getValueForDisplay(0).doubleValue();
+        double xPerPixel = xAxis.getValueForDisplay(1).doubleValue()-x0;
+        double y0 = yAxis.getValueForDisplay(0).doubleValue();
+        double yPerPixel = yAxis.getValueForDisplay(1).doubleValue()-y0;
+        double[] mapping = new double[]{x0, xPerPixel, y0, yPerPixel, width, height};
+        if(Arrays.equals(mapping, lastMapping))
+            return;
+        lastMapping = mapping;
+        
+        if(canvas.getWidth() != width || canvas.getHeight() != height)
+        {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+        }
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if(width <= 0 || height <= 0)
+            return;
+        if(image == null || image.getWidth() != width || image.getHeight() != height)
+        {
+            image = new WritableImage(width, height);
+            pixels = new int[width*height];
+        }
+        render(pixels, width, height, x0, xPerPixel, y0, yPerPixel);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        graphics.drawImage(image, 0, 0);
+    }
+
+    /**
+     * Renders the points into a buffer of ARGB pixels, overwriting its
+     * contents.
+     *
+     * @param argb the buffer to render into, in row major order
+     * @param width the width of the buffer
+     * @param height the height of the buffer
+     * @param x0 the x value at the left edge of the buffer
+     * @param xPerPixel the change in x value per pixel
+     * @param y0 the y value at the top edge of the buffer
+     * @param yPerPixel the change in y value per pixel, usually negative
+     */
+    void render(int[] argb, int width, int height, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        Arrays.fill(argb, 0, width*height, 0);
+        switch(mode)
+        {
+            case HISTOGRAM:
+                renderHistogram(argb, width, height, x0, xPerPixel, y0, yPerPixel);
+                break;
+            case HEXBIN:
+                renderHexbin(argb, width, height, x0, xPerPixel, y0, yPerPixel);
+                break;
+            case MARKERS:
+                renderMarkers(argb, width, height, x0, xPerPixel, y0, yPerPixel);
+                break;
+            default:
+                renderPoints(argb, width, height, x0, xPerPixel, y0, yPerPixel);
+        }
+    }
+
+    /**
+     * 
+     * @param i the index of a point
+     * @return the label of the point, used as an index into its colors
+     */
+    int label(int i)
+    {
+        return labels == null ? 0 : labels[i];
+    }
+    
+    double getX(int i)
+    {
+        return x[i];
+    }
+    
+    double getY(int i)
+    {
+        return y[i];
+    }
+    
+    /**
+     * 
+     * @param label the label of a point
+     * @return the color points with the label are drawn in
+     */
+    Color getColor(int label)
+    {
+        return colors[label];
+    }
+    
+    /**
+     * Finds the point drawn closest to a position on the canvas, using the
+     * mapping of the last time the points were drawn.
+     *
+     * @param px the x position on the canvas
+     * @param py the y position on the canvas
+     * @param radius the maximum distance in pixels from the position to the
+     * point
+     * @return the index of the closest point, or -1 if there is no point
+     * within {@code radius} or the points have not been drawn
+     */
+    int pointAt(double px, double py, double radius)
+    {
+        if(lastMapping == null)
+            return -1;
+        double x0 = lastMapping[0], xPerPixel = lastMapping[1];
+        double y0 = lastMapping[2], yPerPixel = lastMapping[3];
+        return index().nearest(x0+px*xPerPixel, y0+py*yPerPixel, xPerPixel, yPerPixel, radius);
+    }
+    
+    /**
+     * Finds the points drawn inside of a rectangle on the canvas, using the
+     * mapping of the last time the points were drawn.
+     *
+     * @param px0 the x position of one corner
+     * @param py0 the y position of one corner
+     * @param px1 the x position of the opposite corner
+     * @param py1 the y position of the opposite corner
+     * @return the indices of the points in the rectangle, in ascending order
+     */
+    int[] pointsIn(double px0, double py0, double px1, double py1)
+    {
+        if(lastMapping == null)
+            return new int[0];
+        double x0 = lastMapping[0], xPerPixel = lastMapping[1];
+        double y0 = lastMapping[2], yPerPixel = lastMapping[3];
+        return index().inRectangle(x0+px0*xPerPixel, y0+py0*yPerPixel, x0+px1*xPerPixel, y0+py1*yPerPixel);
+    }
+    
+    /**
+     * Finds the points drawn inside of a polygon on the canvas, using the
+     * mapping of the last time the points were drawn.
+     *
+     * @param px the x position of each vertex
+     * @param py the y position of each vertex
+     * @return the indices of the points in the polygon, in ascending order
+     */
+    int[] pointsIn(double[] px, double[] py)
+    {
+        if(lastMapping == null)
+            return new int[0];
+        double[] vx = new double[px.length], vy = new double[py.length];
+        for(int v = 0; v < px.length; v++)
+        {
+            vx[v] = lastMapping[0]+px[v]*lastMapping[1];
+            vy[v] = lastMapping[2]+py[v]*lastMapping[3];
+        }
+        return index().inPolygon(vx, vy);
+    }
+
+    private void renderPoints(int[] argb, int width, int height, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        if(seen == null || seen.length < width*height)
+            seen = new boolean[width*height];
+        else
+            Arrays.fill(seen, false);
+        int[] colorARGB = new int[colors.length];
+        for(int k = 0; k < colors.length; k++)
+            colorARGB[k] = toARGB(colors[k], 1.0);
+        
+        final int half = pointSize/2;
+        for(int i = 0; i < count; i++)
+        {
+            double px = (x[i]-x0)/xPerPixel;
+            double py = (y[i]-y0)/yPerPixel;
+            if(!(px >= 0 && px < width && py >= 0 && py < height))
+                continue;
+            int cx = (int) px, cy = (int) py;
+            if(seen[cy*width+cx])
+                continue;
+            seen[cy*width+cx] = true;
+            int color = colorARGB[label(i)];
+            int yEnd = Math.min(cy-half+pointSize, height);
+            int xStart = Math.max(cx-half, 0), xEnd = Math.min(cx-half+pointSize, width);
+            for(int row = Math.max(cy-half, 0); row < yEnd; row++)
+                Arrays.fill(argb, row*width+xStart, row*width+xEnd, color);
+        }
+    }
+
+    private void renderMarkers(int[] argb, int width, int height, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        if(seen == null || seen.length < width*height)
+            seen = new boolean[width*height];
+        else
+            Arrays.fill(seen, false);
+        int[][] sprites = new int[colors.length][];
+        for(int k = 0; k < colors.length; k++)
+            sprites[k] = Utils.getSprite(k, colors[k]);
+        
+        final int size = Utils.SPRITE_SIZE;
+        final int half = size/2;
+        for(int i = 0; i < count; i++)
+        {
+            double px = (x[i]-x0)/xPerPixel;
+            double py = (y[i]-y0)/yPerPixel;
+            //markers of points just outside of the buffer can still overlap it
+            if(!(px >= -half && px < width+half && py >= -half && py < height+half))
+                continue;
+            int cx = (int) Math.floor(px), cy = (int) Math.floor(py);
+            if(cx >= 0 && cx < width && cy >= 0 && cy < height)
+            {
+                if(seen[cy*width+cx])
+                    continue;
+                seen[cy*width+cx] = true;
+            }
+            int[] sprite = sprites[label(i)];
+            int left = cx-half, top = cy-half;
+            int rowEnd = Math.min(size, height-top), colEnd = Math.min(size, width-left);
+            for(int row = Math.max(0, -top); row < rowEnd; row++)
+            {
+                int dst = (top+row)*width+left;
+                for(int col = Math.max(0, -left); col < colEnd; col++)
+                    argb[dst+col] = over(sprite[row*size+col], argb[dst+col]);
+            }
+        }
+    }
+    
+    /**
+     * Composites one non-premultiplied ARGB color over another
+     * @param src the color drawn on top
+     * @param dst the color already in place
+     * @return the color seen
+     */
+    static int over(int src, int dst)
+    {
+        int sa = src >>> 24;
+        if(sa == 255)
+            return src;
+        if(sa == 0)
+            return dst;
+        int da = (dst >>> 24)*(255-sa)/255;
+        int a = sa+da;
+        int r = (((src >> 16) & 0xFF)*sa+((dst >> 16) & 0xFF)*da)/a;
+        int g = (((src >> 8) & 0xFF)*sa+((dst >> 8) & 0xFF)*da)/a;
+        int b = ((src & 0xFF)*sa+(dst & 0xFF)*da)/a;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private void renderHistogram(int[] argb, int width, int height, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        final int K = colors.length;
+        final int binCols = (width+binSize-1)/binSize;
+        final int binRows = (height+binSize-1)/binSize;
+        int[] counts = new int[binCols*binRows*K];
+        for(int i = 0; i < count; i++)
+        {
+            double px = (x[i]-x0)/xPerPixel;
+            double py = (y[i]-y0)/yPerPixel;
+            if(!(px >= 0 && px < width && py >= 0 && py < height))
+                continue;
+            counts[(((int) py/binSize)*binCols+(int) px/binSize)*K+label(i)]++;
+        }
+        int[] binARGB = binColors(counts, binCols*binRows);
+        
+        for(int row = 0; row < height; row++)
+        {
+            int binRow = row/binSize;
+            for(int col = 0; col < width; col += binSize)
+                Arrays.fill(argb, row*width+col, row*width+Math.min(col+binSize, width), binARGB[binRow*binCols+col/binSize]);
+        }
+    }
+
+    private void renderHexbin(int[] argb, int width, int height, double x0, double xPerPixel, double y0, double yPerPixel)
+    {
+        final int K = colors.length;
+        //pointy topped hexagons in axial coordinates, with an extra ring to cover the edges
+        final int rOffset = 1;
+        final int rCount = (int) Math.ceil(height/(1.5*binSize))+3;
+        final int qOffset = rCount/2+2;
+        final int qCount = (int) Math.ceil(width/(SQRT3*binSize))+qOffset+3;
+        int[] counts = new int[qCount*rCount*K];
+        for(int i = 0; i < count; i++)
+        {
+            double px = (x[i]-x0)/xPerPixel;
+            double py = (y[i]-y0)/yPerPixel;
+            if(!(px >= 0 && px < width && py >= 0 && py < height))
+                continue;
+            int hex = hexIndex(px, py, qOffset, qCount, rOffset, rCount);
+            if(hex >= 0)
+                counts[hex*K+label(i)]++;
+        }
+        int[] hexARGB = binColors(counts, qCount*rCount);
+        
+        for(int row = 0; row < height; row++)
+            for(int col = 0; col < width; col++)
+            {
+                int hex = hexIndex(col+0.5, row+0.5, qOffset, qCount, rOffset, rCount);
+                if(hex >= 0)
+                    argb[row*width+col] = hexARGB[hex];
+            }
+    }
+
+    /**
+     * Finds the hexagonal bin containing a pixel position
+     * @return the index of the bin, or -1 if it is out of range
+     */
+    private int hexIndex(double px, double py, int qOffset, int qCount, int rOffset, int rCount)
+    {
+        double q = (SQRT3/3*px-py/3)/binSize;
+        double r = (2.0/3*py)/binSize;
+        //round in cube coordinates
+        double s = -q-r;
+        long rq = Math.round(q), rr = Math.round(r), rs = Math.round(s);
+        double dq = Math.abs(rq-q), dr = Math.abs(rr-r), ds = Math.abs(rs-s);
+        if(dq > dr && dq > ds)
+            rq = -rr-rs;
+        else if(dr > ds)
+            rr = -rq-rs;
+        long qi = rq+qOffset, ri = rr+rOffset;
+        if(qi < 0 || qi >= qCount || ri < 0 || ri >= rCount)
+            return -1;
+        return (int) (ri*qCount+qi);
+    }
+
+    /**
+     * Computes the color of every bin from the number of points of each label
+     * in it. The colors of the labels are blended by their counts, and the
+     * opacity grows with the log of the total count.
+     *
+     * @param counts the count of each label for each bin
+     * @param bins the number of bins
+     * @return the ARGB color of each bin
+     */
+    private int[] binColors(int[] counts, int bins)
+    {
+        final int K = colors.length;
+        int[] totals = new int[bins];
+        int maxTotal = 0;
+        for(int b = 0; b < bins; b++)
+        {
+            for(int k = 0; k < K; k++)
+                totals[b] += counts[b*K+k];
+            maxTotal = Math.max(maxTotal, totals[b]);
+        }
+        int[] binARGB = new int[bins];
+        double logMax = Math.log1p(maxTotal);
+        for(int b = 0; b < bins; b++)
+        {
+            if(totals[b] == 0)
+                continue;
+            double R = 0, G = 0, B = 0;
+            for(int k = 0; k < K; k++)
+            {
+                double p = counts[b*K+k]/(double) totals[b];
+                R += linearRGB[k*3]*p;
+                G += linearRGB[k*3+1]*p;
+                B += linearRGB[k*3+2]*p;
+            }
+            double opacity = 0.2+0.8*Math.log1p(totals[b])/logMax;
+            binARGB[b] = toARGB(Math.sqrt(R), Math.sqrt(G), Math.sqrt(B), opacity);
+        }
+        return binARGB;
+    }
+
+    static int toARGB(Color color, double opacity)
+    {
+        return toARGB(color.getRed(), color.getGreen(), color.getBlue(), opacity*color.getOpacity());
+    }
+
+    static int toARGB(double r, double g, double b, double opacity)
+    {
+        return (channel(opacity) << 24) | (channel(r) << 16) | (channel(g) << 8) | channel(b);
+    }
+
+    private static int channel(double v)
+    {
+        return Math.max(0, Math.min(255, (int) Math.round(v*255)));
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.geometry.Point2D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.chart.Axis;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polygon;
+import jsat.DataSet;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+
+/**
+ * Lets the user hover over and select the points of a {@link PointLayer},
+ * which has no node per point to receive mouse events. Queries go through a
+ * spatial index of the layer, so they stay fast with millions of points.
+ * <ul>
+ * <li>Hovering over a point draws its marker and shows a tooltip with the
+ * features of its data point.</li>
+ * <li>Dragging with shift held selects the points inside of the lasso
+ * drawn.</li>
+ * <li>Dragging with the shortcut key held selects the points inside of a
+ * rectangle.</li>
+ * <li>Shift clicking without dragging clears the selection.</li>
+ * </ul>
+ * The selection is exposed as the rows of the data set the points came from.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public final class PointPicker
+{
+    /**
+     * The distance, in pixels, from the mouse to a point that counts as being
+     * over it
+     */
+    private static final double HOVER_RADIUS = Utils.SPRITE_SIZE/2.0;
+    /**
+     * The most features listed in a tooltip
+     */
+    private static final int MAX_FEATURES = 12;
+
+    private final PointLayer points;
+    private final Node chart;
+    private final MarkerNodes markers;
+    private final Polygon region = new Polygon();
+    private final Group group = new Group();
+    private final Tooltip tooltip = new Tooltip();
+    private final ReadOnlyObjectWrapper<int[]> selectedRows = new ReadOnlyObjectWrapper<>(this, "selectedRows", new int[0]);
+    /**
+     * The row of the data set of each point of the layer, or {@code null} if
+     * they are the same
+     */
+    private int[] rows;
+    private IntFunction<String> describer;
+    /**
+     * The vertices of the region being dragged out, in canvas coordinates,
+     * or {@code null} if no region is being dragged
+     */
+    private double[] regionX, regionY;
+    private int vertices;
+    private boolean rectangle;
+
+    /**
+     *
+     * @param points the points to pick from
+     * @param chart the chart the points are drawn on, which the tooltip is
+     * shown over
+     */
+    PointPicker(PointLayer points, Node chart)
+    {
+        this.points = points;
+        this.chart = chart;
+        this.markers = new MarkerNodes(points);
+        region.setFill(Color.rgb(30, 100, 200, 0.15));
+        region.setStroke(Color.rgb(30, 100, 200, 0.8));
+        region.setVisible(false);
+        group.getChildren().addAll(markers.getNode(), region);
+        group.setMouseTransparent(true);
+        group.setManaged(false);
+        describer = (int i) -> "x = " + points.getX(i) + "\ny = " + points.getY(i);
+    }
+
+    /**
+     *
+     * @return the node with the hovered and selected markers and the region
+     * being dragged out, to be placed above the canvas of the points
+     */
+    Node getNode()
+    {
+        return group;
+    }
+
+    /**
+     * Sets the row of the data set each point came from, for when the layer
+     * holds the points in a different order
+     * @param rows the row of each point, or {@code null} if they are in the
+     * order of the data set
+     */
+    void setRows(int[] rows)
+    {
+        this.rows = rows;
+    }
+
+    private int row(int i)
+    {
+        return rows == null ? i : rows[i];
+    }
+
+    /**
+     * Sets the data set the points were taken from, so that the tooltip of a
+     * point lists the features of its data point, and its class or target
+     * value.
+     * @param data the data set of the points
+     */
+    public void setDataSet(DataSet data)
+    {
+        describer = (int i) ->
+        {
+            int r = row(i);
+            Vec v = data.getDataPoint(r).getNumericalValues();
+            StringBuilder text = new StringBuilder("Row ").append(r);
+            for(int j = 0; j < Math.min(v.length(), MAX_FEATURES); j++)
+            {
+                String name = data.getNumericName(j);
+                text.append('\n').append(name == null ? "Feature " + j : name).append(" = ").append(v.get(j));
+            }
+            if(v.length() > MAX_FEATURES)
+                text.append("\n\u2026");
+            if(data instanceof ClassificationDataSet)
+            {
+                ClassificationDataSet cds = (ClassificationDataSet) data;
+                text.append("\nClass: ").append(cds.getPredicting().getOptionName(cds.getDataPointCategory(r)));
+            }
+            else if(data instanceof RegressionDataSet)
+                text.append("\nTarget = ").append(((RegressionDataSet) data).getTargetValue(r));
+            return text.toString();
+        };
+    }
+
+    /**
+     *
+     * @return the rows of the data set of the selected points, in ascending
+     * order of the points
+     */
+    public ReadOnlyObjectProperty<int[]> selectedRowsProperty()
+    {
+        return selectedRows.getReadOnlyProperty();
+    }
+
+    public int[] getSelectedRows()
+    {
+        return selectedRows.get().clone();
+    }
+
+    /**
+     * Selects points of the layer, replacing the current selection
+     * @param indices the indices of the points in the arrays of the layer
+     */
+    void selectPoints(int[] indices)
+    {
+        markers.setSelected(indices);
+        int[] selected = new int[indices.length];
+        for(int k = 0; k < indices.length; k++)
+            selected[k] = row(indices[k]);
+        selectedRows.set(selected);
+    }
+
+    /**
+     *
+     * @return the indices in the layer of the selected points
+     */
+    int[] getSelectedPoints()
+    {
+        return markers.getSelected();
+    }
+
+    /**
+     *
+     * @return the index in the layer of the point under the mouse, or -1
+     */
+    int getHoveredPoint()
+    {
+        return markers.getHovered();
+    }
+
+    /**
+     * Moves the markers to the current positions of their points
+     */
+    void layout(Axis<? extends Number> xAxis, Axis<? extends Number> yAxis)
+    {
+        markers.layout(xAxis, yAxis);
+    }
+
+    /**
+     * Handles a mouse event over the chart
+     * @param e any mouse event
+     */
+    void handle(MouseEvent e)
+    {
+        Point2D p = points.getNode().sceneToLocal(e.getSceneX(), e.getSceneY());
+        if(e.getEventType() == MouseEvent.MOUSE_MOVED)
+            hover(p, e);
+        else if(e.getEventType() == MouseEvent.MOUSE_EXITED)
+            hover(null, e);
+        else if(e.getEventType() == MouseEvent.MOUSE_PRESSED)
+            pressed(p, e);
+        else if(e.getEventType() == MouseEvent.MOUSE_DRAGGED && regionX != null)
+        {
+            e.consume();
+            dragged(p);
+        }
+        else if(e.getEventType() == MouseEvent.MOUSE_RELEASED && regionX != null)
+        {
+            e.consume();
+            released(e);
+        }
+    }
+
+    private void hover(Point2D p, MouseEvent e)
+    {
+        int i = p == null ? -1 : points.pointAt(p.getX(), p.getY(), HOVER_RADIUS);
+        if(i == markers.getHovered())
+            return;
+        markers.setHovered(i);
+        if(i < 0)
+            tooltip.hide();
+        else
+        {
+            tooltip.setText(describer.apply(i));
+            tooltip.show(chart, e.getScreenX()+12, e.getScreenY()+12);
+        }
+    }
+
+    private void pressed(Point2D p, MouseEvent e)
+    {
+        regionX = regionY = null;
+        if(e.getButton() != MouseButton.PRIMARY || !(e.isShiftDown() || e.isShortcutDown()))
+            return;
+        e.consume();
+        rectangle = !e.isShiftDown();
+        regionX = new double[64];
+        regionY = new double[64];
+        vertices = 0;
+        addVertex(p);
+        if(rectangle)
+            addVertex(p);
+        hover(null, e);
+    }
+
+    private void dragged(Point2D p)
+    {
+        if(rectangle)
+        {
+            regionX[1] = p.getX();
+            regionY[1] = p.getY();
+        }
+        else
+            addVertex(p);
+        region.getPoints().clear();
+        if(rectangle)
+            region.getPoints().addAll(regionX[0], regionY[0], regionX[1], regionY[0], regionX[1], regionY[1], regionX[0], regionY[1]);
+        else
+            for(int v = 0; v < vertices; v++)
+                region.getPoints().addAll(regionX[v], regionY[v]);
+        region.setVisible(true);
+    }
+
+    private void addVertex(Point2D p)
+    {
+        if(vertices == regionX.length)
+        {
+            regionX = Arrays.copyOf(regionX, vertices*2);
+            regionY = Arrays.copyOf(regionY, vertices*2);
+        }
+        regionX[vertices] = p.getX();
+        regionY[vertices] = p.getY();
+        vertices++;
+    }
+
+    private void released(MouseEvent e)
+    {
+        region.setVisible(false);
+        region.getPoints().clear();
+        if(e.isStillSincePress())
+            selectPoints(new int[0]);
+        else if(rectangle)
+            selectPoints(points.pointsIn(regionX[0], regionY[0], regionX[1], regionY[1]));
+        else
+            selectPoints(points.pointsIn(Arrays.copyOf(regionX, vertices), Arrays.copyOf(regionY, vertices)));
+        regionX = regionY = null;
+    }
+}
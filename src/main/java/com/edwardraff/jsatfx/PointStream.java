@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.animation.AnimationTimer;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.paint.Color;
+
+/**
+ * A PointStream feeds points into a chart while they are being produced, such
+ * as by a training loop. Producers on any thread {@link #offer(double, double, int) offer}
+ * points into a bounded lock-free queue, and once per animation pulse all of
+ * the queued points are drained into a {@link PointLayer} and the chart is
+ * laid out again. So no matter how fast points arrive, the chart is only
+ * updated once per frame. <br>
+ * The points are kept in a ring buffer, so once the maximum number of points
+ * is reached the oldest points are replaced and memory use stays constant.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class PointStream
+{
+    private final RecordQueue queue;
+    private final double[] x;
+    private final double[] y;
+    private final int[] labels;
+    private final PointLayer points;
+    /**
+     * The total number of points ever drained, the next point is written to
+     * index {@code total % x.length}
+     */
+    private long total = 0;
+    private final AtomicLong dropped = new AtomicLong();
+    
+    private XYChart<?, ?> chart;
+    private NumberAxis xAxis;
+    private NumberAxis yAxis;
+    private Runnable onPulse;
+    private final AnimationTimer timer;
+
+    /**
+     * Creates a new stream of points that all have the same color
+     * @param maxPoints the maximum number of points to retain
+     * @param queueCapacity the maximum number of points that can be waiting
+     * to be drawn, points offered while the queue is full are dropped
+     * @param color the color of the points
+     */
+    public PointStream(int maxPoints, int queueCapacity, Color color)
+    {
+        this(maxPoints, queueCapacity, new Color[]{color});
+    }
+
+    /**
+     * Creates a new stream of labeled points
+     * @param maxPoints the maximum number of points to retain
+     * @param queueCapacity the maximum number of points that can be waiting
+     * to be drawn, points offered while the queue is full are dropped
+     * @param colors the color for each label
+     */
+    public PointStream(int maxPoints, int queueCapacity, Color[] colors)
+    {
+        if(maxPoints < 1)
+            throw new IllegalArgumentException("maxPoints must be positive, not " + maxPoints);
+        queue = new RecordQueue(queueCapacity);
+        x = new double[maxPoints];
+        y = new double[maxPoints];
+        labels = new int[maxPoints];
+        points = new PointLayer(x, y, labels, colors);
+        points.setCount(0);
+        timer = new AnimationTimer()
+        {
+            @Override
+            public void handle(long now)
+            {
+                pulse();
+            }
+        };
+    }
+
+    /**
+     * Adds a point to the stream. This method may be called from any thread.
+     *
+     * @param xVal the x value of the point
+     * @param yVal the y value of the point
+     * @param label the label of the point, used to pick its color
+     * @return {@code true} if the point was accepted, or {@code false} if the
+     * queue was full and the point was dropped
+     */
+    public boolean offer(double xVal, double yVal, int label)
+    {
+        if(queue.offer(xVal, yVal, label))
+            return true;
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds a point with label 0 to the stream. This method may be called from
+     * any thread.
+     *
+     * @param xVal the x value of the point
+     * @param yVal the y value of the point
+     * @return {@code true} if the point was accepted, or {@code false} if the
+     * queue was full and the point was dropped
+     */
+    public boolean offer(double xVal, double yVal)
+    {
+        return offer(xVal, yVal, 0);
+    }
+
+    /**
+     * 
+     * @return the number of points dropped because the queue was full
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * 
+     * @return the layer the points of this stream are drawn by
+     */
+    public PointLayer getPoints()
+    {
+        return points;
+    }
+
+    /**
+     * Sets the chart to lay out after new points arrive, and starts draining
+     * the stream on every animation pulse. The chart is expected to draw
+     * {@link #getPoints() } itself.
+     *
+     * @param chart the chart showing the points
+     * @param xAxis the x axis to fit to the range of the points, or
+     * {@code null} to leave it alone
+     * @param yAxis the y axis to fit to the range of the points, or
+     * {@code null} to leave it alone
+     */
+    public void attach(XYChart<?, ?> chart, NumberAxis xAxis, NumberAxis yAxis)
+    {
+        this.chart = chart;
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+        if(xAxis != null)
+            xAxis.setAutoRanging(false);
+        if(yAxis != null)
+            yAxis.setAutoRanging(false);
+        timer.start();
+    }
+
+    /**
+     * Sets an action to run on the JavaFX Application Thread after each
+     * pulse in which new points arrived. This can be used to refresh the
+     * model shown by the chart, e.g., with
+     * {@link ClassificationPlot#setClassifier(jsat.classifiers.Classifier) }
+     * given a snapshot of the model being trained.
+     *
+     * @param onPulse the action to run, or {@code null} for none
+     */
+    public void setOnPulse(Runnable onPulse)
+    {
+        this.onPulse = onPulse;
+    }
+
+    /**
+     * Stops draining the stream. Points offered afterwards will queue up until
+     * the queue is full.
+     */
+    public void stop()
+    {
+        timer.stop();
+    }
+
+    /**
+     * Drains all of the queued points into the ring buffer, fits the axes
+     * and lays out the chart. Called once per animation pulse.
+     */
+    private void pulse()
+    {
+        final int capacity = x.length;
+        int drained = queue.drain((double xVal, double yVal, int label) ->
+        {
+            int idx = (int) (total % capacity);
+            x[idx] = xVal;
+            y[idx] = yVal;
+            labels[idx] = label;
+            total++;
+        });
+        if(drained == 0)
+            return;
+        int count = (int) Math.min(total, capacity);
+        points.setCount(count);
+        fitAxes(count);
+        if(onPulse != null)
+            onPulse.run();
+        if(chart != null)
+            chart.requestLayout();
+    }
+
+    private void fitAxes(int count)
+    {
+        if(xAxis == null && yAxis == null)
+            return;
+        double xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY;
+        double yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < count; i++)
+        {
+            xMin = Math.min(xMin, x[i]);
+            xMax = Math.max(xMax, x[i]);
+            yMin = Math.min(yMin, y[i]);
+            yMax = Math.max(yMax, y[i]);
+        }
+        fitAxis(xAxis, xMin, xMax);
+        fitAxis(yAxis, yMin, yMax);
+    }
+
+    private static void fitAxis(NumberAxis axis, double min, double max)
+    {
+        if(axis == null || !(min <= max))
+            return;
+        if(min == max)
+        {
+            min -= 0.5;
+            max += 0.5;
+        }
+        double tick = Plot.getTick(min, max, 10);
+        double pad = (max-min)*0.05;
+        if(axis.getLowerBound() != min-pad || axis.getUpperBound() != max+pad)
+        {
+            axis.setLowerBound(min-pad);
+            axis.setUpperBound(max+pad);
+            axis.setTickUnit(tick);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of {@code (x, y, label)} records, stored in
+ * primitive arrays so that nothing is allocated per record. Any number of
+ * threads may {@link #offer(double, double, int) offer} records, but only a
+ * single thread may {@link #drain(Consumer) drain} them. <br>
+ * Each slot has a sequence number that tells a producer when the slot is free
+ * to write, and the consumer when the slot has been written, as in Dmitry
+ * Vyukov's bounded queue.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class RecordQueue
+{
+    /**
+     * Receives the records drained from a queue
+     */
+    interface Consumer
+    {
+        void accept(double x, double y, int label);
+    }
+
+    private final int mask;
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] labels;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Only touched by the consumer thread
+     */
+    private long head = 0;
+
+    /**
+     * Creates a new queue
+     * @param capacity the minimum number of records the queue can hold, which
+     * will be rounded up to a power of two
+     */
+    RecordQueue(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity-1, 1))*2;
+        mask = size-1;
+        xs = new double[size];
+        ys = new double[size];
+        labels = new int[size];
+        sequence = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++)
+            sequence.set(i, i);
+    }
+
+    /**
+     * Adds a record to the queue, if there is room for it. Safe to call from
+     * any thread.
+     *
+     * @param x the x value
+     * @param y the y value
+     * @param label the label of the record
+     * @return {@code true} if the record was added, {@code false} if the
+     * queue was full
+     */
+    boolean offer(double x, double y, int label)
+    {
+        long pos = tail.get();
+        while(true)
+        {
+            int idx = (int) (pos & mask);
+            long dif = sequence.get(idx)-pos;
+            if(dif == 0)
+            {
+                if(tail.compareAndSet(pos, pos+1))
+                    break;
+                pos = tail.get();
+            }
+            else if(dif < 0)
+                return false;
+            else
+                pos = tail.get();
+        }
+        int idx = (int) (pos & mask);
+        xs[idx] = x;
+        ys[idx] = y;
+        labels[idx] = label;
+        sequence.lazySet(idx, pos+1);//publishes the values above
+        return true;
+    }
+
+    /**
+     * Removes every record currently in the queue and passes it to the
+     * consumer. Must only be called from one thread at a time.
+     *
+     * @param consumer the consumer to pass each record to
+     * @return the number of records drained
+     */
+    int drain(Consumer consumer)
+    {
+        int drained = 0;
+        while(true)
+        {
+            int idx = (int) (head & mask);
+            if(sequence.get(idx) != head+1)
+                return drained;
+            consumer.accept(xs[idx], ys[idx], labels[idx]);
+            sequence.lazySet(idx, head+mask+1);
+            head++;
+            drained++;
+        }
+    }
+}
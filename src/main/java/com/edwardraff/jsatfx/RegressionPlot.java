@@ -16,15 +16,33 @@
  */
 package com.edwardraff.jsatfx;
 
+import java.util.concurrent.ForkJoinPool;
+import javafx.concurrent.Task;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.chart.Axis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.ScatterChart;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+import jsat.regression.Regressor;
 
 /**
+ * A scatter plot with the curve of a regression function drawn over it. The
+ * curve is sampled in parallel on a background thread, and the samples are
+ * kept until the x axis or the function changes, so changes to the y axis or
+ * the rest of the chart only redraw it. <br>
+ * When given the points the function was trained on, the plot can also show a
+ * band around the curve of where the points are expected to fall, and color
+ * the points by the size of their residuals. The residuals are computed once
+ * per function, as part of the same background task that samples the curve.
+ * <br>
+ * The plot can be zoomed with the mouse wheel and panned by dragging. Until
+ * the curve is sampled for the new view, the last samples are drawn moved and
+ * scaled into place.
  *
  * @author Edward Raff <Raff.Edward@gmail.com>
  * @param <X>
@@ -32,9 +50,64 @@ import java.util.function.DoubleFunction;
  */
 public class RegressionPlot<X extends Number, Y extends Number> extends ScatterChart<X, Y>
 {
+    private static final Color BAND_COLOR = Color.BLUE.deriveColor(0, 1, 1, 0.15);
+    
     private Canvas canvas;
-    private DoubleFunction<Double> regressor;
-    private int stepSize = 3;
+    private PointLayer points;
+    /**
+     * Picks from the {@link #points}, and draws the hovered and selected ones
+     */
+    private PointPicker picker;
+    private SampledCurve.Evaluator regressor;
+    /**
+     * Incremented whenever the function changes, so that samples of an old
+     * function are not mistaken for current ones
+     */
+    private long regressorVersion = 0;
+    /**
+     * The most recent samples of the function
+     */
+    private SampledCurve curve;
+    /**
+     * The x axis mapping, width, version and y scale the {@link #curve} was
+     * sampled for
+     */
+    private double[] curveKey;
+    private double[] pendingKey;
+    private boolean pendingResiduals;
+    private Task<Samples> pending;
+    
+    private double[] trainX;
+    private double[] trainY;
+    /**
+     * The order that sorts {@link #trainX}, kept once found so that the
+     * residuals of every new function reuse it. {@code null} until found, or
+     * if {@link #trainSorted}.
+     */
+    private int[] trainOrder;
+    private boolean trainSorted;
+    private boolean showBand = false;
+    private boolean showResiduals = false;
+    private Residuals residuals;
+    /**
+     * The {@link #regressorVersion} the {@link #residuals} were computed for
+     */
+    private long residualsVersion = -1;
+    private PointLayer residualPoints;
+    /**
+     * The spread of the points around each sample of the {@link #curve}
+     */
+    private double[] band;
+    private final PanZoom panZoom;
+    private final PlotMetrics metrics = new PlotMetrics();
+    /**
+     * Shows the {@link #metrics} over the plot, created when first shown
+     */
+    private Label metricsLabel;
+    /**
+     * The display position of the left edge of the canvas
+     */
+    private double canvasLeft;
 
     public RegressionPlot(Axis<X> xAxis, Axis<Y> yAxis, DoubleFunction<Double> regressor)
     {
@@ -42,7 +115,227 @@ public class RegressionPlot<X extends Number, Y extends Number> extends ScatterC
         canvas = new Canvas(7, 7);
         
         getPlotChildren().add(canvas);
+        setRegressor(regressor);
+        panZoom = PanZoom.install(this);
+        addEventHandler(MouseEvent.ANY, (MouseEvent e) ->
+        {
+            if(picker != null)
+                picker.handle(e);
+        });
+    }
+    
+    /**
+     * 
+     * @param enabled {@code true} to zoom with the mouse wheel and pan by
+     * dragging, which requires both axes to be {@link NumberAxis number axes}
+     */
+    public void setPanZoomEnabled(boolean enabled)
+    {
+        panZoom.setEnabled(enabled);
+    }
+
+    public boolean isPanZoomEnabled()
+    {
+        return panZoom.isEnabled();
+    }
+    
+    /**
+     * 
+     * @return the counters of where the time of this plot goes
+     */
+    public PlotMetrics getMetrics()
+    {
+        return metrics;
+    }
+    
+    /**
+     * 
+     * @param show {@code true} to show a summary of the {@link #getMetrics() 
+     * metrics} in the corner of the plot
+     */
+    public void setShowMetrics(boolean show)
+    {
+        if(show && metricsLabel == null)
+        {
+            metricsLabel = metrics.createOverlay();
+            getPlotChildren().add(metricsLabel);
+        }
+        if(metricsLabel != null)
+            metricsLabel.setVisible(show);
+        requestChartLayout();
+    }
+    
+    public boolean isShowMetrics()
+    {
+        return metricsLabel != null && metricsLabel.isVisible();
+    }
+    
+    /**
+     * Sets the function whose curve is drawn
+     * @param regressor the function to draw, or {@code null} for none
+     */
+    public void setRegressor(DoubleFunction<Double> regressor)
+    {
+        setEvaluator(regressor == null ? null : SampledCurve.Evaluator.of(regressor));
+    }
+    
+    /**
+     * Sets the regressor whose curve is drawn, using its first feature as the
+     * x value.
+     * @param regressor the regressor to draw, or {@code null} for none
+     */
+    public void setRegressor(Regressor regressor)
+    {
+        setEvaluator(regressor == null ? null : SampledCurve.Evaluator.of(regressor));
+    }
+    
+    /**
+     * Sets the function whose curve is drawn. This avoids boxing each value,
+     * and should be preferred for cheap functions. The function must be safe
+     * to call from multiple threads at the same time.
+     * @param f the function to draw, or {@code null} for none
+     */
+    public void setRegressionFunction(DoubleUnaryOperator f)
+    {
+        setEvaluator(f == null ? null : SampledCurve.Evaluator.of(f));
+    }
+    
+    private void setEvaluator(SampledCurve.Evaluator regressor)
+    {
         this.regressor = regressor;
+        regressorChanged();
+    }
+    
+    /**
+     * Indicates that the function drawn has changed its output, such as a
+     * model that was trained further, so that its curve must be sampled
+     * again.
+     */
+    public void regressorChanged()
+    {
+        regressorVersion++;
+        requestChartLayout();
+    }
+    
+    /**
+     * Sets the points the function was trained on, which are needed to show
+     * the band around the curve and the residuals of the points. The arrays
+     * are used directly and must not be modified afterwards.
+     *
+     * @param x the x value of each point
+     * @param y the true value of each point
+     */
+    public void setTrainingData(double[] x, double[] y)
+    {
+        setTrainingData(x, y, false);
+    }
+    
+    /**
+     * 
+     * @param x the x value of each point
+     * @param y the true value of each point
+     * @param sorted {@code true} if the points are already in ascending order
+     * of {@code x}, so that they need not be sorted again
+     */
+    void setTrainingData(double[] x, double[] y, boolean sorted)
+    {
+        if(x.length != y.length)
+            throw new IllegalArgumentException("Got " + x.length + " x values but " + y.length + " y values");
+        this.trainX = x;
+        this.trainY = y;
+        this.trainSorted = sorted;
+        this.trainOrder = null;
+        //residuals still being found are for the old points
+        if(pendingResiduals)
+            cancelPending();
+        clearResiduals();
+        requestChartLayout();
+    }
+    
+    /**
+     * 
+     * @param showBand {@code true} to shade the region around the curve where
+     * about 95% of points are expected to fall, estimated from the residuals
+     * of nearby training points. Requires
+     * {@link #setTrainingData(double[], double[]) training data}.
+     */
+    public void setShowBand(boolean showBand)
+    {
+        this.showBand = showBand;
+        requestChartLayout();
+    }
+
+    public boolean isShowBand()
+    {
+        return showBand;
+    }
+    
+    /**
+     * 
+     * @param showResiduals {@code true} to draw the training points colored
+     * from blue to red by the size of their residuals. Requires
+     * {@link #setTrainingData(double[], double[]) training data}.
+     */
+    public void setShowResiduals(boolean showResiduals)
+    {
+        this.showResiduals = showResiduals;
+        requestChartLayout();
+    }
+
+    public boolean isShowResiduals()
+    {
+        return showResiduals;
+    }
+    
+    /**
+     * 
+     * @return {@code true} if the residuals are shown but have not been
+     * found for the current function and training points
+     */
+    private boolean needResiduals()
+    {
+        return regressor != null && trainX != null && (showBand || showResiduals) && residualsVersion != regressorVersion;
+    }
+    
+    private void clearResiduals()
+    {
+        residuals = null;
+        residualsVersion = -1;
+        band = null;
+        if(residualPoints != null)
+            getPlotChildren().remove(residualPoints.getNode());
+        residualPoints = null;
+    }
+    
+    /**
+     * Sets a layer of points to draw, for data sets too large to give each
+     * point its own node. 
+     * @param points the points to draw, or {@code null} for none
+     */
+    public void setPoints(PointLayer points)
+    {
+        if(this.points != null)
+            getPlotChildren().removeAll(this.points.getNode(), picker.getNode());
+        this.points = points;
+        picker = points == null ? null : new PointPicker(points, this);
+        if(points != null)
+            getPlotChildren().addAll(points.getNode(), picker.getNode());
+        requestChartLayout();
+    }
+
+    public PointLayer getPoints()
+    {
+        return points;
+    }
+    
+    /**
+     * 
+     * @return the picker of the points of the point layer, which exposes the
+     * rows the user selected, or {@code null} if there is no point layer
+     */
+    public PointPicker getPointPicker()
+    {
+        return picker;
     }
     
     @Override
@@ -59,50 +352,296 @@ public class RegressionPlot<X extends Number, Y extends Number> extends ScatterC
         super.layoutPlotChildren();
         
         double x_min = ((NumberAxis)getXAxis()).getLowerBound();
-        double y_min = ((NumberAxis)getYAxis()).getLowerBound();
         double x_max = ((NumberAxis)getXAxis()).getUpperBound();
-        double y_max = ((NumberAxis)getYAxis()).getUpperBound();
-        
         
         double mid_x = getXAxis().getDisplayPosition((X) Double.valueOf((x_max+x_min)/2));
-        double mid_y = getYAxis().getDisplayPosition((Y) Double.valueOf((y_max+y_min)/2));
         
+        if(points != null)
+        {
+            points.layout(getXAxis(), getYAxis());
+            //kept above the residual points, which are added later
+            picker.getNode().toFront();
+            picker.layout(getXAxis(), getYAxis());
+        }
+        if(residualPoints != null)
+        {
+            residualPoints.getNode().setVisible(showResiduals);
+            if(showResiduals)
+                residualPoints.layout(getXAxis(), getYAxis());
+        }
+        //the colored points replace the plain ones
+        boolean plain = !showResiduals || residualPoints == null;
+        for(Series<X, Y> series : getData())
+            for(Data<X, Y> datum : series.getData())
+                if(datum.getNode() != null)
+                    datum.getNode().setVisible(plain);
+        if(points != null)
+            points.getNode().setVisible(plain);
         
         if (canvas != null)
         {
-            getPlotChildren().remove(canvas);
-            getPlotChildren().add(0, canvas = new Canvas(getWidth(), getHeight()));
-            
             final double w = getWidth();
             final double h = getHeight();
+            if(canvas.getWidth() != w || canvas.getHeight() != h)
+            {
+                canvas.setWidth(w);
+                canvas.setHeight(h);
+            }
             
+            canvasLeft = mid_x-(w/2);
             
-            double leftMost = mid_x-(w/2);
-            double topMost = mid_y-(h/2);
+//            canvas.resizeRelocate(mid_x - (w / 2), mid_y - (h / 2), w, h);
+            canvas.relocate(canvasLeft, 0);//Why does this work but not 0, 0 ?
             
-            GraphicsContext graphics = canvas.getGraphicsContext2D();
-            graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
-            graphics.setFill(Color.BLUE);
-            graphics.setStroke(Color.BLUE);
-            for(int i = 0; i < canvas.getWidth(); i+=stepSize)
+            if(regressor == null)
+            {
+                cancelPending();
+                curve = null;
+                curveKey = null;
+                clearResiduals();
+            }
+            else
+            {
+                double x0 = getXAxis().getValueForDisplay(canvasLeft).doubleValue();
+                double xPerPixel = getXAxis().getValueForDisplay(canvasLeft+1).doubleValue()-x0;
+                double yPerPixel = getYAxis().getValueForDisplay(1).doubleValue()-getYAxis().getValueForDisplay(0).doubleValue();
+                double[] key = new double[]{x0, xPerPixel, w, regressorVersion, yPerPixel};
+                boolean needResiduals = needResiduals();
+                boolean needCurve = !covers(curveKey, key);
+                boolean covered = pending != null && covers(pendingKey, key) && (pendingResiduals || !needResiduals);
+                //a layout whose work is already being done starts nothing new
+                metrics.layoutPass(covered || (!needCurve && !needResiduals));
+                if((needCurve || needResiduals) && !covered)
+                    startSampling(key, needCurve, needResiduals);
+            }
+            drawCurve();
+        }
+        
+        if(metricsLabel != null)
+        {
+            metricsLabel.toFront();
+            metricsLabel.autosize();
+            metricsLabel.relocate(5, 5);
+        }
+        
+    }
+    
+    /**
+     * 
+     * @param sampled the key a curve was sampled for, may be {@code null}
+     * @param wanted the key of the current view
+     * @return {@code true} if a curve sampled for one key can be drawn for
+     * the other. The x mapping and version must match, but a curve sampled
+     * for a finer y scale is still accurate at a coarser one.
+     */
+    private static boolean covers(double[] sampled, double[] wanted)
+    {
+        if(sampled == null)
+            return false;
+        for(int i = 0; i < 4; i++)
+            if(sampled[i] != wanted[i])
+                return false;
+        return Math.abs(sampled[4]) <= Math.abs(wanted[4]);
+    }
+    
+    private void cancelPending()
+    {
+        if(pending != null)
+            pending.cancel(false);
+        pending = null;
+        pendingKey = null;
+        pendingResiduals = false;
+    }
+    
+    /**
+     * Starts sampling the function on a background thread for the given x
+     * axis mapping, and computing the residuals of the training points, as
+     * asked. Until it is done, the last curve sampled is drawn in its place.
+     */
+    private void startSampling(final double[] key, final boolean withCurve, final boolean withResiduals)
+    {
+        cancelPending();
+        
+        final SampledCurve.Evaluator f = metrics.counting(regressor);
+        final double x0 = key[0];
+        final double xPerPixel = key[1];
+        final double width = key[2];
+        final long version = regressorVersion;
+        final double yPerPixel = key[4];
+        final double[] x = trainX;
+        final double[] y = trainY;
+        final boolean sorted = trainSorted;
+        final int[] knownOrder = trainOrder;
+        
+        final Task<Samples> task = new Task<Samples>()
+        {
+            @Override
+            protected Samples call() throws Exception
+            {
+                Samples samples = new Samples();
+                if(withResiduals)
                 {
-                    double x_val_prev = getXAxis().getValueForDisplay(leftMost+i-stepSize).doubleValue();
-                    Double y_val_prev = regressor.apply(x_val_prev);
-                    double j_prev = getYAxis().getDisplayPosition((Y) y_val_prev);
-                    
-                    double x_val = getXAxis().getValueForDisplay(leftMost+i).doubleValue();
-                    Double y_val = regressor.apply(x_val);
-                    double j = getYAxis().getDisplayPosition((Y) y_val);
-                    
-                    graphics.moveTo(i-stepSize, j_prev);
-                    graphics.lineTo(i, j);
-                    graphics.stroke();
+                    if(!sorted)
+                        samples.order = knownOrder != null ? knownOrder : Utils.sortedOrder(x);
+                    samples.residuals = Residuals.of(f, x, y, samples.order, ForkJoinPool.commonPool(), this::isCancelled);
+                    if(samples.residuals == null)
+                        return null;
                 }
-                        
-//            canvas.resizeRelocate(mid_x - (w / 2), mid_y - (h / 2), w, h);
-            canvas.resizeRelocate(mid_x - (w / 2), 0, w, h);//Why does this work but not 0, 0 ?
+                if(withCurve)
+                {
+                    samples.curve = SampledCurve.adaptive(f, x0, xPerPixel, yPerPixel, width, ForkJoinPool.commonPool(), this::isCancelled);
+                    if(samples.curve == null)
+                        return null;
+                }
+                return samples;
+            }
+        };
+        task.setOnSucceeded(e ->
+        {
+            if(task != pending)
+                return;
+            cancelPending();
+            Samples samples = task.getValue();
+            if(samples == null)
+                return;
+            if(samples.curve != null)
+            {
+                curve = samples.curve;
+                curveKey = key;
+            }
+            band = null;
+            if(samples.order != null && x == trainX)
+                trainOrder = samples.order;
+            if(samples.residuals != null)
+                showResiduals(samples.residuals, x, y, version);
+            drawCurve();
+            //the new samples are on screen, which ends the frame they were made for
+            metrics.frameShown();
+        });
+        task.setOnFailed(e ->
+        {
+            if(task == pending)
+                cancelPending();
+        });
+        
+        pending = task;
+        pendingKey = key;
+        pendingResiduals = withResiduals;
+        Utils.BACKGROUND.execute(task);
+    }
+    
+    private void showResiduals(Residuals residuals, double[] x, double[] y, long version)
+    {
+        clearResiduals();
+        this.residuals = residuals;
+        residualsVersion = version;
+        residualPoints = new PointLayer(x, y, residuals.levels(), Residuals.levelColors());
+        getPlotChildren().add(residualPoints.getNode());
+        requestChartLayout();
+    }
+    
+    /**
+     * Draws the most recent samples of the function with the current axes
+     */
+    private void drawCurve()
+    {
+        long start = System.nanoTime();
+        try
+        {
+            strokeCurve();
+        }
+        finally
+        {
+            metrics.rasterized(System.nanoTime()-start);
         }
+    }
+    
+    private void strokeCurve()
+    {
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if(curve == null)
+            return;
+        graphics.setFill(Color.BLUE);
+        graphics.setStroke(Color.BLUE);
         
+        if(showBand && residuals != null)
+        {
+            if(band == null)
+                band = residuals.spread(curve.x);
+            drawBand(graphics);
+        }
+        
+        graphics.beginPath();
+        boolean connected = false;
+        for(int k = 0; k < curve.size(); k++)
+        {
+            double i = getXAxis().getDisplayPosition((X) Double.valueOf(curve.x[k]))-canvasLeft;
+            double j = getYAxis().getDisplayPosition((Y) Double.valueOf(curve.y[k]));
+            if(!Double.isFinite(j))
+                connected = false;
+            else if(connected)
+                graphics.lineTo(i, j);
+            else
+            {
+                graphics.moveTo(i, j);
+                connected = true;
+            }
+        }
+        graphics.stroke();
+    }
+    
+    /**
+     * Fills the band around each run of finite samples of the curve
+     */
+    private void drawBand(GraphicsContext graphics)
+    {
+        graphics.setFill(BAND_COLOR);
+        int start = 0;
+        while(start < curve.size())
+        {
+            if(!Double.isFinite(curve.y[start]))
+            {
+                start++;
+                continue;
+            }
+            int end = start;
+            while(end < curve.size() && Double.isFinite(curve.y[end]))
+                end++;
+            
+            graphics.beginPath();
+            for(int k = start; k < end; k++)
+            {
+                double i = getXAxis().getDisplayPosition((X) Double.valueOf(curve.x[k]))-canvasLeft;
+                double j = getYAxis().getDisplayPosition((Y) Double.valueOf(curve.y[k]+Residuals.BAND_Z*band[k]));
+                if(k == start)
+                    graphics.moveTo(i, j);
+                else
+                    graphics.lineTo(i, j);
+            }
+            for(int k = end-1; k >= start; k--)
+            {
+                double i = getXAxis().getDisplayPosition((X) Double.valueOf(curve.x[k]))-canvasLeft;
+                double j = getYAxis().getDisplayPosition((Y) Double.valueOf(curve.y[k]-Residuals.BAND_Z*band[k]));
+                graphics.lineTo(i, j);
+            }
+            graphics.closePath();
+            graphics.fill();
+            start = end;
+        }
+    }
+    
+    /**
+     * The results of one background task
+     */
+    private static class Samples
+    {
+        SampledCurve curve;
+        Residuals residuals;
+        /**
+         * The order that sorts the training points, if it had to be found
+         */
+        int[] order;
     }
 
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import javafx.scene.paint.Color;
+
+/**
+ * The residuals of a regression function on the points it was trained on,
+ * along with what is needed to estimate how widely the points spread around
+ * the function near any x value. The spread near a value is the root mean
+ * square of the residuals of the points closest to it in x, which gives an
+ * approximate prediction interval that widens where the function fits
+ * poorly.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class Residuals
+{
+    /**
+     * The number of standard deviations a band around the curve covers, for
+     * roughly 95% of normally distributed residuals
+     */
+    static final double BAND_Z = 1.96;
+    /**
+     * The number of colors residual magnitudes are divided into
+     */
+    static final int COLOR_LEVELS = 16;
+    /**
+     * The fewest points on each side of a value used to estimate the spread
+     * near it
+     */
+    private static final int MIN_HALF_WINDOW = 5;
+    
+    /**
+     * The residual of each point, in the order the points were given
+     */
+    final double[] residuals;
+    /**
+     * The root mean square of all residuals
+     */
+    final double rms;
+    /**
+     * The x values of the points in sorted order
+     */
+    private final double[] sortedX;
+    /**
+     * {@code squareSums[i]} is the sum of the squared residuals of the first
+     * {@code i} points in sorted order
+     */
+    private final double[] squareSums;
+    /**
+     * The number of points on each side of a value used to estimate the
+     * spread near it
+     */
+    private final int halfWindow;
+
+    /**
+     * 
+     * @param x the x value of each point
+     * @param order the order that sorts {@code x}, or {@code null} if it is
+     * already sorted
+     * @param residuals the residual of each point
+     */
+    private Residuals(double[] x, int[] order, double[] residuals)
+    {
+        this.residuals = residuals;
+        int n = x.length;
+        sortedX = order == null ? x : new double[n];
+        squareSums = new double[n+1];
+        for(int i = 0; i < n; i++)
+        {
+            int row = order == null ? i : order[i];
+            if(order != null)
+                sortedX[i] = x[row];
+            double r = Double.isFinite(residuals[row]) ? residuals[row] : 0;
+            squareSums[i+1] = squareSums[i] + r*r;
+        }
+        rms = n == 0 ? 0 : Math.sqrt(squareSums[n]/n);
+        halfWindow = Math.max(MIN_HALF_WINDOW, n/40);
+    }
+    
+    /**
+     * Evaluates a function on every point and computes its residuals.
+     *
+     * @param f the function to evaluate
+     * @param x the x value of each point
+     * @param y the true value of each point
+     * @param order the order that sorts {@code x}, as from
+     * {@link Utils#sortedOrder(double[]) }, or {@code null} if {@code x} is
+     * already sorted
+     * @param pool the pool to evaluate the points in
+     * @param cancelled checked between batches of points, evaluation stops
+     * early once it returns {@code true}
+     * @return the residuals, or {@code null} if cancelled
+     */
+    static Residuals of(SampledCurve.Evaluator f, double[] x, double[] y, int[] order, ForkJoinPool pool, BooleanSupplier cancelled)
+    {
+        double[] predicted = new double[x.length];
+        if(!SampledCurve.evaluate(f, x, predicted, pool, cancelled))
+            return null;
+        for(int i = 0; i < predicted.length; i++)
+            predicted[i] = y[i]-predicted[i];
+        return new Residuals(x, order, predicted);
+    }
+    
+    /**
+     * Estimates the spread of the points around the function near each of
+     * the given x values
+     *
+     * @param xs the values to estimate the spread at
+     * @return the root mean square residual near each value
+     */
+    double[] spread(double[] xs)
+    {
+        int n = sortedX.length;
+        double[] spread = new double[xs.length];
+        for(int k = 0; k < xs.length; k++)
+        {
+            int pos = Arrays.binarySearch(sortedX, xs[k]);
+            if(pos < 0)
+                pos = -pos-1;
+            int from = Math.max(0, pos-halfWindow);
+            int to = Math.min(n, pos+halfWindow);
+            spread[k] = to > from ? Math.sqrt((squareSums[to]-squareSums[from])/(to-from)) : rms;
+        }
+        return spread;
+    }
+    
+    /**
+     * Assigns each point a color level by the magnitude of its residual, with
+     * residuals of twice the {@link #rms} or more getting the highest level.
+     *
+     * @return the level of each point, in the range [0, {@link #COLOR_LEVELS})
+     */
+    int[] levels()
+    {
+        int[] levels = new int[residuals.length];
+        double scale = rms > 0 ? COLOR_LEVELS/(2*rms) : 0;
+        for(int i = 0; i < levels.length; i++)
+        {
+            double level = Math.abs(residuals[i])*scale;
+            levels[i] = level < COLOR_LEVELS ? (int) level : COLOR_LEVELS-1;
+        }
+        return levels;
+    }
+    
+    /**
+     * 
+     * @return the colors of each level returned by {@link #levels() }, from
+     * blue for the smallest residuals to red for the largest
+     */
+    static Color[] levelColors()
+    {
+        Color[] colors = new Color[COLOR_LEVELS];
+        for(int i = 0; i < COLOR_LEVELS; i++)
+            colors[i] = Color.BLUE.interpolate(Color.RED, i/(double)(COLOR_LEVELS-1));
+        return colors;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.regression.Regressor;
+
+/**
+ * A function sampled at positions along the horizontal pixels of a plot, so
+ * that it can be drawn as a series of connected line segments. Each position
+ * is evaluated exactly once, and samples are in increasing order of x.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+final class SampledCurve
+{
+    /**
+     * The number of pixels between the first samples taken, before any are
+     * added where the curve bends
+     */
+    static final int COARSE_STEP = 8;
+    /**
+     * How far in pixels the curve may stray from a straight line between two
+     * samples before more samples are taken between them
+     */
+    static final double TOLERANCE = 0.5;
+    /**
+     * The number of samples evaluated as one task
+     */
+    private static final int SAMPLES_PER_BATCH = 64;
+    
+    /**
+     * The x value of each sample
+     */
+    final double[] x;
+    /**
+     * The value of the function at each sample, which may be {@code NaN}
+     */
+    final double[] y;
+
+    private SampledCurve(double[] x, double[] y)
+    {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     *
+     * @return the number of samples in the curve
+     */
+    int size()
+    {
+        return x.length;
+    }
+
+    /**
+     * Samples a function adaptively. The function is first sampled every
+     * {@link #COARSE_STEP} pixels, and each interval is then split in half
+     * for as long as the value at its middle strays more than
+     * {@link #TOLERANCE} pixels from the straight line between its ends, or
+     * the function is undefined at only one of them. So straight stretches
+     * of the curve cost few evaluations, while bends and jumps are followed
+     * down to single pixels. The samples start before the left edge and end
+     * at or past the right edge so that the curve reaches both sides. <br>
+     * All the samples of each round of splitting are evaluated in parallel.
+     *
+     * @param f the function to sample
+     * @param x0 the x value at pixel 0
+     * @param xPerPixel the change in x value from one horizontal pixel to the
+     * next
+     * @param yPerPixel the change in y value from one vertical pixel to the
+     * next, usually negative
+     * @param width the number of pixels to cover
+     * @param pool the pool to evaluate the samples in
+     * @param cancelled checked between batches of samples, sampling stops
+     * early once it returns {@code true}
+     * @return the sampled curve, or {@code null} if it was cancelled
+     */
+    static SampledCurve adaptive(Evaluator f, double x0, double xPerPixel, double yPerPixel, double width, ForkJoinPool pool, BooleanSupplier cancelled)
+    {
+        int n = (int) Math.ceil(width/COARSE_STEP)+3;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for(int k = 0; k < n; k++)
+            xs[k] = x0+(k-1)*COARSE_STEP*xPerPixel;
+        evaluate(f, xs, ys, pool, cancelled);
+        
+        //open[i] marks the interval between sample i and i+1 as needing its middle tested
+        boolean[] open = new boolean[n-1];
+        Arrays.fill(open, true);
+        double gap = COARSE_STEP;
+        while(gap > 1)
+        {
+            if(cancelled.getAsBoolean())
+                return null;
+            int count = 0;
+            for(int i = 0; i < open.length; i++)
+            {
+                if(Double.isNaN(ys[i]) && Double.isNaN(ys[i+1]))
+                    open[i] = false;
+                if(open[i])
+                    count++;
+            }
+            if(count == 0)
+                break;
+            
+            double[] midX = new double[count];
+            double[] midY = new double[count];
+            for(int i = 0, m = 0; i < open.length; i++)
+                if(open[i])
+                    midX[m++] = (xs[i]+xs[i+1])/2;
+            evaluate(f, midX, midY, pool, cancelled);
+            
+            int size = xs.length+count;
+            double[] nextX = new double[size];
+            double[] nextY = new double[size];
+            boolean[] nextOpen = new boolean[size-1];
+            for(int i = 0, m = 0, j = 0; i < xs.length; i++)
+            {
+                nextX[j] = xs[i];
+                nextY[j++] = ys[i];
+                if(i == open.length || !open[i])
+                    continue;
+                boolean split = Double.isNaN(ys[i]) != Double.isNaN(ys[i+1]) ||
+                        !(Math.abs((midY[m]-(ys[i]+ys[i+1])/2)/yPerPixel) <= TOLERANCE);
+                nextOpen[j-1] = nextOpen[j] = split;
+                nextX[j] = midX[m];
+                nextY[j++] = midY[m++];
+            }
+            xs = nextX;
+            ys = nextY;
+            open = nextOpen;
+            gap /= 2;
+        }
+        if(cancelled.getAsBoolean())
+            return null;
+        return new SampledCurve(xs, ys);
+    }
+    
+    /**
+     * Evaluates a function at every x value, in parallel batches.
+     *
+     * @param f the function to evaluate
+     * @param x the values to evaluate the function at
+     * @param y the array to store the result for each x value in
+     * @param pool the pool to evaluate the batches in
+     * @param cancelled checked between batches, evaluation stops early once
+     * it returns {@code true}
+     * @return {@code true} if every value was evaluated, {@code false} if it
+     * was cancelled first
+     */
+    static boolean evaluate(Evaluator f, double[] x, double[] y, ForkJoinPool pool, BooleanSupplier cancelled)
+    {
+        pool.invoke(new Batch(f, cancelled, x, y, 0, x.length));
+        return !cancelled.getAsBoolean();
+    }
+    
+    /**
+     * Evaluates a function at many x values at once
+     */
+    interface Evaluator
+    {
+        /**
+         * Evaluates the function at each x value. This method must be safe to
+         * call from multiple threads at the same time.
+         *
+         * @param x the values to evaluate the function at
+         * @param y the array to store the result for each x value in, which
+         * should be {@code NaN} where the function is undefined
+         * @param from the first index to evaluate
+         * @param to the index after the last to evaluate
+         */
+        void evaluate(double[] x, double[] y, int from, int to);
+        
+        /**
+         * 
+         * @param f a function that returns {@code null} where it is undefined
+         * @return an evaluator for the function
+         */
+        static Evaluator of(DoubleFunction<Double> f)
+        {
+            return of((double x) -> 
+            {
+                Double y = f.apply(x);
+                return y == null ? Double.NaN : y;
+            });
+        }
+        
+        static Evaluator of(DoubleUnaryOperator f)
+        {
+            return (double[] x, double[] y, int from, int to) -> 
+            {
+                for(int i = from; i < to; i++)
+                    y[i] = f.applyAsDouble(x[i]);
+            };
+        }
+        
+        /**
+         * Evaluates a regressor on its first feature. Each call creates a
+         * single vector and data point, and overwrites the vector's value for
+         * each x value, in the same way as {@link ClassifierBatch}.
+         *
+         * @param r the regressor to evaluate
+         * @return an evaluator for the regressor
+         */
+        static Evaluator of(Regressor r)
+        {
+            return (double[] x, double[] y, int from, int to) -> 
+            {
+                DenseVector vec = new DenseVector(1);
+                DataPoint dp = new DataPoint(vec);
+                for(int i = from; i < to; i++)
+                {
+                    vec.set(0, x[i]);
+                    y[i] = r.regress(dp);
+                }
+            };
+        }
+    }
+
+    /**
+     * Evaluates a range of x values, splitting it into smaller batches to run
+     * in parallel.
+     */
+    private static class Batch extends RecursiveAction
+    {
+        private static final long serialVersionUID = -2381749560185531210L;
+        private final Evaluator f;
+        private final BooleanSupplier cancelled;
+        private final double[] x;
+        private final double[] y;
+        private final int from;
+        private final int to;
+
+        public Batch(Evaluator f, BooleanSupplier cancelled, double[] x, double[] y, int from, int to)
+        {
+            this.f = f;
+            this.cancelled = cancelled;
+            this.x = x;
+            this.y = y;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to-from > SAMPLES_PER_BATCH)
+            {
+                int mid = (from+to)>>>1;
+                invokeAll(new Batch(f, cancelled, x, y, from, mid),
+                        new Batch(f, cancelled, x, y, mid, to));
+                return;
+            }
+            if(!cancelled.getAsBoolean())
+                f.evaluate(x, y, from, to);
+        }
+    }
+}
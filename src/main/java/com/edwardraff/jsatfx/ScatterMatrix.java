@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import jsat.DataSet;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.Vec;
+
+/**
+ * A grid of scatter plots of every pair of features of a data set, with a
+ * histogram of each feature along the diagonal. Every column of the data set
+ * is extracted once, and each feature keeps the same range in every cell it
+ * appears in. <br>
+ * Only the cells that are scrolled into view are drawn. Each is rasterized in
+ * parallel on the common fork join pool, and recently drawn cells are kept so
+ * that scrolling back does not draw them again.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+public class ScatterMatrix extends ScrollPane
+{
+    /**
+     * The most rasterized cells kept around after they leave the view
+     */
+    private static final int MAX_CACHED = 256;
+    private static final int GAP = 4;
+    
+    private final double[][] columns;
+    /**
+     * The category of each point, or {@code null} if the data set was not a
+     * {@link ClassificationDataSet}
+     */
+    private final int[] labels;
+    private final Color[] colors;
+    private final String[] names;
+    /**
+     * The value at the left (or bottom) edge of each feature's range
+     */
+    private final double[] low;
+    /**
+     * The width of each feature's range
+     */
+    private final double[] span;
+    
+    private final Pane content = new Pane();
+    private int cellSize = 120;
+    private PointLayer.Mode mode = PointLayer.Mode.POINTS;
+    /**
+     * The canvas showing each cell in view, keyed by {@link #key(int, int) }
+     */
+    private final Map<Long, Canvas> visible = new HashMap<>();
+    private final ArrayDeque<Canvas> spare = new ArrayDeque<>();
+    /**
+     * The pixels of recently rasterized cells, in least recently used order
+     */
+    private final LinkedHashMap<Long, int[]> rendered = new LinkedHashMap<Long, int[]>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+    /**
+     * Incremented whenever the look of the cells changes, so that cells
+     * rasterized before are not shown
+     */
+    private long version = 0;
+
+    /**
+     * Creates a scatter matrix of every numeric feature of a data set
+     * @param d the data set to plot. If it is a {@link ClassificationDataSet},
+     * points are colored by their category. 
+     */
+    public ScatterMatrix(DataSet d)
+    {
+        int n = d.getSampleSize();
+        int features = d.getNumNumericalVars();
+        ClassificationDataSet cds = d instanceof ClassificationDataSet ? (ClassificationDataSet) d : null;
+        
+        columns = new double[features][n];
+        labels = cds != null ? new int[n] : null;
+        low = new double[features];
+        span = new double[features];
+        double[] high = new double[features];
+        Arrays.fill(low, Double.POSITIVE_INFINITY);
+        Arrays.fill(high, Double.NEGATIVE_INFINITY);
+        for(int i = 0; i < n; i++)
+        {
+            Vec v = d.getDataPoint(i).getNumericalValues();
+            for(int j = 0; j < features; j++)
+            {
+                double value = v.get(j);
+                columns[j][i] = value;
+                low[j] = Math.min(low[j], value);
+                high[j] = Math.max(high[j], value);
+            }
+            if(cds != null)
+                labels[i] = cds.getDataPointCategory(i);
+        }
+        //same padding as the axes of Plot
+        for(int j = 0; j < features; j++)
+        {
+            double range = high[j]-low[j];
+            if(!(range > 0))
+                range = 1;
+            low[j] -= range*0.05;
+            span[j] = range*1.1;
+        }
+        
+        colors = Utils.getNcolors(cds != null ? cds.getClassSize() : 1);
+        names = new String[features];
+        for(int j = 0; j < features; j++)
+            names[j] = d.getNumericName(j);
+        
+        setContent(content);
+        resizeContent();
+        hvalueProperty().addListener(o -> updateVisible());
+        vvalueProperty().addListener(o -> updateVisible());
+        viewportBoundsProperty().addListener(o -> updateVisible());
+    }
+
+    /**
+     * 
+     * @param cellSize the width and height of each cell in pixels
+     */
+    public void setCellSize(int cellSize)
+    {
+        if(cellSize < 8)
+            throw new IllegalArgumentException("Cells must be at least 8 pixels, not " + cellSize);
+        this.cellSize = cellSize;
+        clearCells();
+        spare.clear();
+        resizeContent();
+        updateVisible();
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * 
+     * @param mode how the points of each off-diagonal cell are drawn
+     */
+    public void setMode(PointLayer.Mode mode)
+    {
+        this.mode = mode;
+        clearCells();
+        updateVisible();
+    }
+
+    public PointLayer.Mode getMode()
+    {
+        return mode;
+    }
+    
+    private static long key(int row, int col)
+    {
+        return ((long) row << 32) | col;
+    }
+    
+    private void resizeContent()
+    {
+        double size = columns.length*(cellSize+GAP);
+        content.setPrefSize(size, size);
+        content.setMinSize(size, size);
+    }
+    
+    /**
+     * Forgets every rasterized cell and returns their canvases to the spare
+     * pool
+     */
+    private void clearCells()
+    {
+        version++;
+        rendered.clear();
+        for(Canvas canvas : visible.values())
+        {
+            content.getChildren().remove(canvas);
+            spare.add(canvas);
+        }
+        visible.clear();
+    }
+    
+    /**
+     * Adds a canvas for each cell that has come into view, and removes those
+     * of cells that have left it
+     */
+    private void updateVisible()
+    {
+        if(getViewportBounds() == null)
+            return;
+        final int features = columns.length;
+        final double step = cellSize+GAP;
+        double viewWidth = getViewportBounds().getWidth();
+        double viewHeight = getViewportBounds().getHeight();
+        double left = Math.max(0, features*step-viewWidth)*(getHvalue()-getHmin())/(getHmax()-getHmin());
+        double top = Math.max(0, features*step-viewHeight)*(getVvalue()-getVmin())/(getVmax()-getVmin());
+        
+        int firstCol = Math.max(0, (int) (left/step));
+        int lastCol = Math.min(features, (int) Math.ceil((left+viewWidth)/step));
+        int firstRow = Math.max(0, (int) (top/step));
+        int lastRow = Math.min(features, (int) Math.ceil((top+viewHeight)/step));
+        
+        Iterator<Map.Entry<Long, Canvas>> iter = visible.entrySet().iterator();
+        while(iter.hasNext())
+        {
+            Map.Entry<Long, Canvas> entry = iter.next();
+            int row = (int) (entry.getKey() >>> 32);
+            int col = (int) (long) entry.getKey();
+            if(row < firstRow || row >= lastRow || col < firstCol || col >= lastCol)
+            {
+                content.getChildren().remove(entry.getValue());
+                spare.add(entry.getValue());
+                iter.remove();
+            }
+        }
+        
+        for(int row = firstRow; row < lastRow; row++)
+            for(int col = firstCol; col < lastCol; col++)
+            {
+                final long key = key(row, col);
+                if(visible.containsKey(key))
+                    continue;
+                Canvas canvas = spare.isEmpty() ? new Canvas(cellSize, cellSize) : spare.poll();
+                canvas.getGraphicsContext2D().clearRect(0, 0, cellSize, cellSize);
+                canvas.relocate(col*step, row*step);
+                content.getChildren().add(canvas);
+                visible.put(key, canvas);
+                
+                int[] pixels = rendered.get(key);
+                if(pixels != null)
+                    show(canvas, row, col, pixels);
+                else
+                    rasterize(canvas, row, col);
+            }
+    }
+    
+    /**
+     * Rasterizes a cell on the common pool, and shows it if the canvas is
+     * still being used for the same cell once done
+     */
+    private void rasterize(final Canvas canvas, final int row, final int col)
+    {
+        final long key = key(row, col);
+        final long startVersion = version;
+        final int size = cellSize;
+        final PointLayer.Mode cellMode = mode;
+        ForkJoinPool.commonPool().execute(() ->
+        {
+            final int[] pixels = new int[size*size];
+            if(row == col)
+                renderHistogram(pixels, size, row);
+            else
+            {
+                //each cell gets its own layer, as a layer's scratch space can not be shared between threads
+                PointLayer layer = new PointLayer(columns[col], columns[row], labels, colors);
+                layer.setMode(cellMode);
+                layer.setPointSize(2);
+                layer.render(pixels, size, size, low[col], span[col]/size, low[row]+span[row], -span[row]/size);
+            }
+            Platform.runLater(() ->
+            {
+                if(version != startVersion)
+                    return;
+                rendered.put(key, pixels);
+                if(visible.get(key) == canvas)
+                    show(canvas, row, col, pixels);
+            });
+        });
+    }
+    
+    private void show(Canvas canvas, int row, int col, int[] pixels)
+    {
+        //written into the canvas itself, as drawImage is deferred to the pulse
+        //and a shared image would show its last pixels in every cell
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.getPixelWriter().setPixels(0, 0, cellSize, cellSize, PixelFormat.getIntArgbInstance(), pixels, 0, cellSize);
+        graphics.setStroke(Color.GRAY);
+        graphics.strokeRect(0.5, 0.5, cellSize-1, cellSize-1);
+        if(row == col && names[row] != null)
+        {
+            graphics.setFill(Color.BLACK);
+            graphics.fillText(names[row].trim(), 4, 14);
+        }
+    }
+    
+    /**
+     * Draws a histogram of one feature, with a bar for every 4 pixels
+     */
+    private void renderHistogram(int[] pixels, int size, int feature)
+    {
+        final int barWidth = 4;
+        int[] counts = new int[(size+barWidth-1)/barWidth];
+        double[] column = columns[feature];
+        for(double value : column)
+        {
+            int bin = (int) ((value-low[feature])/span[feature]*size)/barWidth;
+            if(bin >= 0 && bin < counts.length)
+                counts[bin]++;
+        }
+        int max = 1;
+        for(int c : counts)
+            max = Math.max(max, c);
+        
+        int color = PointLayer.toARGB(Color.STEELBLUE, 0.8);
+        //leave room for the name of the feature at the top
+        int usable = size-20;
+        for(int bin = 0; bin < counts.length; bin++)
+        {
+            int barHeight = (int) Math.round(counts[bin]/(double) max*usable);
+            int xStart = bin*barWidth, xEnd = Math.min(xStart+barWidth-1, size);
+            for(int py = size-barHeight; py < size; py++)
+                Arrays.fill(pixels, py*size+xStart, py*size+xEnd, color);
+        }
+    }
+}
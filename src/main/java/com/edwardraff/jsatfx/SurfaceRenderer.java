@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Your Organisation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.edwardraff.jsatfx;
+
+import java.util.Arrays;
+import javafx.scene.paint.Color;
+
+/**
+ * Converts a {@link DecisionSurface} into ARGB pixels. The color of each class
+ * is converted once into a table of squared (linear) RGB components, so that
+ * blending the classes of a cell by their probabilities is only a few
+ * multiplications, and every cell is written straight into an {@code int[]}
+ * buffer that can be pushed to an image in one call.
+ *
+ * @author Edward Raff <Raff.Edward@gmail.com>
+ */
+class SurfaceRenderer
+{
+    private final int classes;
+    /**
+     * The squared red, green and blue component of each class, in the range
+     * [0, 255<sup>2</sup>], stored as 3 values per class
+     */
+    private final double[] linearRGB;
+    /**
+     * The ARGB value of each class, used for hard boundaries
+     */
+    private final int[] hardARGB;
+    private final int alpha;
+
+    /**
+     * Creates a new renderer
+     * @param colors the color of each class
+     * @param opacity the opacity to draw the surface with
+     */
+    public SurfaceRenderer(Color[] colors, double opacity)
+    {
+        this.classes = colors.length;
+        this.linearRGB = new double[classes*3];
+        this.hardARGB = new int[classes];
+        this.alpha = (int) Math.round(opacity*255);
+        for(int k = 0; k < classes; k++)
+        {
+            double r = colors[k].getRed()*255, g = colors[k].getGreen()*255, b = colors[k].getBlue()*255;
+            linearRGB[k*3] = r*r;
+            linearRGB[k*3+1] = g*g;
+            linearRGB[k*3+2] = b*b;
+            hardARGB[k] = argb(alpha, (int) Math.round(r), (int) Math.round(g), (int) Math.round(b));
+        }
+    }
+    
+    /**
+     * Returns the colors used for each class when drawing a decision surface
+     * over the given number of classes. 
+     * @param classes the number of classes
+     * @return the base color of each class, brightened for use as a background
+     */
+    static Color[] backgroundColors(int classes)
+    {
+        Color[] colors = Utils.getNcolors(classes);
+        for(int i = 0; i < colors.length; i++)
+            colors[i] = colors[i].brighter();
+        return colors;
+    }
+
+    /**
+     * Renders the surface into the given buffer. Pixels not covered by any
+     * cell of the surface are cleared to be fully transparent.
+     *
+     * @param surface the surface to render
+     * @param pixels the buffer to write to, of at least {@code width*height}
+     * values in row major order
+     * @param width the width of the buffer in pixels
+     * @param height the height of the buffer in pixels
+     * @param hard {@code true} to draw only the most likely class of each
+     * cell, {@code false} to blend the colors of all classes
+     */
+    void render(DecisionSurface surface, int[] pixels, int width, int height, boolean hard)
+    {
+        Arrays.fill(pixels, 0, width*height, 0);
+        final GridAxis xGrid = surface.xGrid;
+        final GridAxis yGrid = surface.yGrid;
+        final int usable = Math.min(classes, surface.classes);
+        
+        for(int row = 0; row < surface.rows(); row++)
+        {
+            int yStart = Math.max(yGrid.pixel(row), 0);
+            int yEnd = Math.min(yGrid.pixel(row)+yGrid.resolution, height);
+            if(yStart >= yEnd)
+                continue;
+            int lineStart = yStart*width;
+            for(int col = 0; col < surface.cols(); col++)
+            {
+                int xStart = Math.max(xGrid.pixel(col), 0);
+                int xEnd = Math.min(xGrid.pixel(col)+xGrid.resolution, width);
+                if(xStart >= xEnd || surface.state[row*surface.cols()+col] == DecisionSurface.UNKNOWN)
+                    continue;
+                int color;
+                if(hard)
+                    color = hardARGB[surface.mostLikely(col, row)];
+                else
+                {
+                    int pos = (row*surface.cols()+col)*surface.classes;
+                    double R = 0, G = 0, B = 0;
+                    for(int k = 0; k < usable; k++)
+                    {
+                        double p = surface.probs[pos+k];
+                        R += linearRGB[k*3]*p;
+                        G += linearRGB[k*3+1]*p;
+                        B += linearRGB[k*3+2]*p;
+                    }
+                    color = argb(alpha, (int) Math.sqrt(R), (int) Math.sqrt(G), (int) Math.sqrt(B));
+                }
+                Arrays.fill(pixels, lineStart+xStart, lineStart+xEnd, color);
+            }
+            //every line of pixels in the row of cells is the same
+            for(int y = yStart+1; y < yEnd; y++)
+                System.arraycopy(pixels, lineStart, pixels, y*width, width);
+        }
+    }
+
+    private static int argb(int a, int r, int g, int b)
+    {
+        return (a << 24) | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
+    }
+}
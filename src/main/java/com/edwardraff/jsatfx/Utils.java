@@ -16,6 +16,9 @@
  */
 package com.edwardraff.jsatfx;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Circle;
@@ -29,9 +32,118 @@ import javafx.scene.shape.Shape;
  */
 public class Utils
 {
+    /**
+     * Runs the tasks that coordinate the evaluation of a model for a plot, so
+     * that the FX thread is never blocked by it
+     */
+    static final ExecutorService BACKGROUND = Executors.newCachedThreadPool((Runnable r) ->
+    {
+        Thread t = new Thread(r, "jsatfx-background");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    /**
+     * The width and height, in pixels, of the sprites returned by
+     * {@link #getSprite(int, javafx.scene.paint.Color) }
+     */
+    static final int SPRITE_SIZE = 11;
+    /**
+     * The number of samples per pixel along each axis when rendering a sprite
+     */
+    private static final int SPRITE_SAMPLES = 4;
+    private static final double SQRT5 = Math.sqrt(5);
+    
+    private static final ConcurrentHashMap<Color, Color> strokeColors = new ConcurrentHashMap<>();
+    /**
+     * Sprites keyed by the shape in the high bits and the ARGB fill color in
+     * the low bits
+     */
+    private static final ConcurrentHashMap<Long, int[]> sprites = new ConcurrentHashMap<>();
+    
     public static Shape getShape(int i, Color fillColor)
     {
-        return getShape(i, fillColor, fillColor.darker().darker());
+        return getShape(i, fillColor, getStrokeColor(fillColor));
+    }
+    
+    /**
+     * 
+     * @param fillColor the fill color of a marker
+     * @return the color of the outline drawn around a marker of the given
+     * fill color. The same instance is returned for equal fill colors. 
+     */
+    public static Color getStrokeColor(Color fillColor)
+    {
+        return strokeColors.computeIfAbsent(fillColor, c -> c.darker().darker());
+    }
+    
+    /**
+     * Returns a pre-rendered image of the marker that
+     * {@link #getShape(int, javafx.scene.paint.Color) } would create, so that
+     * many markers can be stamped into a pixel buffer without creating a node
+     * for each. Sprites are cached, and must not be altered.
+     *
+     * @param i the index of the shape, as for {@code getShape}
+     * @param fillColor the fill color of the marker
+     * @return the ARGB pixels of a {@link #SPRITE_SIZE} by {@code SPRITE_SIZE}
+     * sprite in row major order, centered on the marker
+     */
+    static int[] getSprite(int i, Color fillColor)
+    {
+        int shape = i % 3;
+        long key = ((long) shape << 32) | (PointLayer.toARGB(fillColor, 1.0) & 0xFFFFFFFFL);
+        return sprites.computeIfAbsent(key, k -> renderSprite(shape, fillColor, getStrokeColor(fillColor)));
+    }
+    
+    private static int[] renderSprite(int shape, Color fill, Color stroke)
+    {
+        int[] sprite = new int[SPRITE_SIZE*SPRITE_SIZE];
+        final double samples = SPRITE_SAMPLES*SPRITE_SAMPLES;
+        for(int row = 0; row < SPRITE_SIZE; row++)
+            for(int col = 0; col < SPRITE_SIZE; col++)
+            {
+                //premultiplied sums over the samples of the pixel
+                double a = 0, r = 0, g = 0, b = 0;
+                for(int sy = 0; sy < SPRITE_SAMPLES; sy++)
+                    for(int sx = 0; sx < SPRITE_SAMPLES; sx++)
+                    {
+                        //shape coordinates, where the shapes of getShape span [0, 10]
+                        double u = col+(sx+0.5)/SPRITE_SAMPLES-0.5;
+                        double v = row+(sy+0.5)/SPRITE_SAMPLES-0.5;
+                        double d = shapeDistance(shape, u, v);
+                        Color c = Math.abs(d) <= 0.5 ? stroke : d < 0 ? fill : null;
+                        if(c == null)
+                            continue;
+                        a += c.getOpacity();
+                        r += c.getRed()*c.getOpacity();
+                        g += c.getGreen()*c.getOpacity();
+                        b += c.getBlue()*c.getOpacity();
+                    }
+                if(a > 0)
+                    sprite[row*SPRITE_SIZE+col] = PointLayer.toARGB(r/a, g/a, b/a, a/samples);
+            }
+        return sprite;
+    }
+    
+    /**
+     * 
+     * @return the distance from a point to the edge of a shape, negative when
+     * the point is inside of it
+     */
+    private static double shapeDistance(int shape, double u, double v)
+    {
+        switch(shape)
+        {
+            case 1:
+                return Math.max(Math.abs(u-5), Math.abs(v-5))-5;
+            case 2:
+                //the triangle (5, 0), (10, 10), (0, 10)
+                double left = (-2*(u-5)-v)/SQRT5;
+                double right = (2*(u-5)-v)/SQRT5;
+                return Math.max(v-10, Math.max(left, right));
+            default:
+                return Math.hypot(u-5, v-5)-4;
+        }
     }
     
     public static Shape getShape(int i, Paint fillColor, Paint strokeColor)
@@ -57,6 +169,98 @@ public class Utils
         return shape;
     }
 
+    /**
+     * Arrays shorter than this are sorted by insertion sort
+     */
+    private static final int INSERTION_SORT_SIZE = 24;
+    
+    /**
+     * Finds the order that sorts an array of values, without boxing any of
+     * them. {@link Double#NaN NaN} values are placed last. 
+     *
+     * @param keys the values to sort, which are not altered
+     * @return the index into {@code keys} of the value at each position of
+     * the sorted order
+     */
+    static int[] sortedOrder(double[] keys)
+    {
+        //the keys are sorted along with the order, so that comparisons do not
+        //have to jump around the original array
+        double[] k = keys.clone();
+        int[] order = new int[k.length];
+        for(int i = 0; i < order.length; i++)
+            order[i] = i;
+        int end = k.length;
+        for(int i = end-1; i >= 0; i--)
+            if(Double.isNaN(k[i]))
+                swap(k, order, i, --end);
+        sort(k, order, 0, end-1);
+        return order;
+    }
+    
+    /**
+     * Sorts {@code k[lo..hi]} inclusive, applying the same swaps to
+     * {@code order}
+     */
+    private static void sort(double[] k, int[] order, int lo, int hi)
+    {
+        while(hi-lo >= INSERTION_SORT_SIZE)
+        {
+            int mid = (lo+hi) >>> 1;
+            if(k[mid] < k[lo])
+                swap(k, order, mid, lo);
+            if(k[hi] < k[lo])
+                swap(k, order, hi, lo);
+            if(k[hi] < k[mid])
+                swap(k, order, hi, mid);
+            double pivot = k[mid];
+            
+            int i = lo-1, j = hi+1;
+            while(true)
+            {
+                while(k[++i] < pivot);
+                while(k[--j] > pivot);
+                if(i >= j)
+                    break;
+                swap(k, order, i, j);
+            }
+            //recurse into the smaller side so the stack stays shallow
+            if(j-lo < hi-j)
+            {
+                sort(k, order, lo, j);
+                lo = j+1;
+            }
+            else
+            {
+                sort(k, order, j+1, hi);
+                hi = j;
+            }
+        }
+        for(int i = lo+1; i <= hi; i++)
+        {
+            double key = k[i];
+            int index = order[i];
+            int j = i-1;
+            for(; j >= lo && k[j] > key; j--)
+            {
+                k[j+1] = k[j];
+                order[j+1] = order[j];
+            }
+            k[j+1] = key;
+            order[j+1] = index;
+        }
+    }
+    
+    private static void swap(double[] k, int[] order, int i, int j)
+    {
+        double t = k[i];
+        k[i] = k[j];
+        k[j] = t;
+        int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+    }
+
     public static Color[] getNcolors(int N)
     {
         Color[] colors = new Color[N];
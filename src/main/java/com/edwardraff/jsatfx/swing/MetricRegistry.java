@@ -0,0 +1,145 @@
+package com.edwardraff.jsatfx.swing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.DataSet;
+import jsat.linear.distancemetrics.*;
+
+/**
+ * MetricRegistry holds the distance metrics offered for a
+ * {@link jsat.parameters.MetricParameter}, and a cache of the metrics that
+ * have been trained on each data set. Metrics like the
+ * {@link MahalanobisDistance} need an expensive training step, which is done
+ * once per data set in the background, so that switching back to a metric
+ * that was used before is instant. The cache only holds weak references to
+ * the data sets, so it does not keep them from being collected.
+ *
+ * @author Edward Raff
+ */
+public final class MetricRegistry
+{
+    private static final ExecutorService TRAINING = Executors.newCachedThreadPool((Runnable r) ->
+    {
+        Thread t = new Thread(r, "jsatfx-metric-training");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final List<DistanceMetric> prototypes = new ArrayList<>();
+    /**
+     * The trained metrics of each data set, keyed by their prototype. A
+     * metric that is still training has a future that is not done yet.
+     */
+    private static final Map<DataSet, Map<DistanceMetric, CompletableFuture<DistanceMetric>>> trained = new WeakHashMap<>();
+
+    static
+    {
+        prototypes.add(new EuclideanDistance());
+        prototypes.add(new ManhattanDistance());
+        prototypes.add(new ChebyshevDistance());
+        prototypes.add(new CosineDistance());
+        prototypes.add(new MahalanobisDistance());
+    }
+
+    private MetricRegistry()
+    {
+    }
+
+    /**
+     *
+     * @return the shared prototype of every metric offered, which must not be
+     * altered or given to a model directly
+     */
+    public static synchronized List<DistanceMetric> getPrototypes()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(prototypes));
+    }
+
+    /**
+     * Adds a metric to those offered by every panel created afterwards
+     * @param prototype the untrained metric to offer
+     */
+    public static synchronized void register(DistanceMetric prototype)
+    {
+        prototypes.add(prototype);
+    }
+
+    /**
+     *
+     * @param prototype one of the {@link #getPrototypes() prototypes}
+     * @return {@code true} if the metric must be trained on a data set
+     * before it can be used
+     */
+    public static boolean needsTraining(DistanceMetric prototype)
+    {
+        return prototype instanceof TrainableDistanceMetric && ((TrainableDistanceMetric) prototype).needsTraining();
+    }
+
+    /**
+     * Returns a copy of a metric trained on a data set if one is already
+     * cached, without waiting.
+     *
+     * @param prototype one of the {@link #getPrototypes() prototypes}
+     * @param data the data set the metric is used on, or {@code null} to
+     * leave any training to the model
+     * @return a copy of the metric that is ready to use, or {@code null} if
+     * it has not been trained on the data set yet
+     */
+    public static synchronized DistanceMetric getIfReady(DistanceMetric prototype, DataSet data)
+    {
+        if(data == null || !needsTraining(prototype))
+            return prototype.clone();
+        Map<DistanceMetric, CompletableFuture<DistanceMetric>> cache = trained.get(data);
+        CompletableFuture<DistanceMetric> future = cache == null ? null : cache.get(prototype);
+        if(future == null || !future.isDone() || future.isCompletedExceptionally())
+            return null;
+        return future.join().clone();
+    }
+
+    /**
+     * Trains a metric on a data set in the background, unless it is already
+     * trained or training. Each data set trains each metric at most once.
+     *
+     * @param prototype one of the {@link #getPrototypes() prototypes}
+     * @param data the data set to train the metric on
+     * @return a future of the trained metric shared by every caller, which
+     * must be {@link DistanceMetric#clone() copied} before it is given to a
+     * model
+     */
+    public static synchronized CompletableFuture<DistanceMetric> train(DistanceMetric prototype, DataSet data)
+    {
+        if(!needsTraining(prototype))
+            return CompletableFuture.completedFuture(prototype);
+        Map<DistanceMetric, CompletableFuture<DistanceMetric>> cache = trained.get(data);
+        if(cache == null)
+            trained.put(data, cache = new HashMap<>());
+        CompletableFuture<DistanceMetric> future = cache.get(prototype);
+        if(future == null || future.isCompletedExceptionally())
+        {
+            future = CompletableFuture.supplyAsync(() ->
+            {
+                DistanceMetric metric = prototype.clone();
+                TrainableDistanceMetric.trainIfNeeded(metric, data);
+                return metric;
+            }, TRAINING);
+            cache.put(prototype, future);
+        }
+        return future;
+    }
+
+    /**
+     * Drops every trained metric of a data set, for when it has been altered
+     * @param data the data set to forget
+     */
+    public static synchronized void forget(DataSet data)
+    {
+        trained.remove(data);
+    }
+}
@@ -5,19 +5,33 @@ import java.awt.Dialog;
 import java.awt.GridLayout;
 import java.awt.Window;
 import java.awt.event.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import javafx.application.Platform;
 import javax.swing.*;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.LayoutStyle.ComponentPlacement;
 import javax.swing.event.DocumentEvent;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentListener;
-import jsat.linear.distancemetrics.*;
+import com.edwardraff.jsatfx.ClassificationPlot;
+import com.edwardraff.jsatfx.RegressionPlot;
+import jsat.DataSet;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.parameters.*;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.Regressor;
 
 /**
  * Parameter Panel provides a default GUI to alter the parameter values of any 
  * object that implements {@link Parameterized}. For {@link MetricParameter}, it
- * provides a sub list of possible parameters to choose from.
+ * provides a sub list of possible parameters to choose from, taken from the
+ * {@link MetricRegistry}.
  * 
  * @author Edward Raff
  */
@@ -27,14 +41,27 @@ public class ParameterPanel extends javax.swing.JPanel
     private static final long serialVersionUID = -7333731204670319777L;
     final GridLayout gridLayout;
     
-    final DistanceMetric[] distanceMetrics = new DistanceMetric[]
-    {
-        new EuclideanDistance(), 
-        new ManhattanDistance(),
-        new ChebyshevDistance(),
-        new CosineDistance(),
-        new MahalanobisDistance(),
-    };
+    /**
+     * The default time, in milliseconds, an edit must go unchanged before it
+     * is applied
+     */
+    public static final int DEFAULT_DEBOUNCE_DELAY = 300;
+    
+    /**
+     * The latest edit of each parameter that has not been applied yet. Each
+     * returns {@code true} if the parameter accepted the new value.
+     */
+    private final Map<Parameter, BooleanSupplier> pendingEdits = new LinkedHashMap<>();
+    /**
+     * Applies the {@link #pendingEdits} once edits stop arriving
+     */
+    private final Timer debounce;
+    
+    /**
+     * The data set metrics are trained on before they are chosen, or
+     * {@code null} to leave any training to the model
+     */
+    private final DataSet data;
     
     /**
      * Creates new form ParameterPanel
@@ -42,7 +69,25 @@ public class ParameterPanel extends javax.swing.JPanel
      */
     public ParameterPanel(Parameterized parameterized)
     {
+        this(parameterized, null);
+    }
+    
+    /**
+     * Creates a new ParameterPanel that trains the distance metrics chosen
+     * for any {@link MetricParameter} on the given data set in the
+     * background, showing their progress in the panel. Trained metrics are
+     * cached by the {@link MetricRegistry}, so choosing a metric again, in
+     * this or any other panel for the same data set, is instant.
+     *
+     * @param parameterized the object whose parameters are altered
+     * @param data the data set the object will be trained on, or {@code null}
+     */
+    public ParameterPanel(Parameterized parameterized, DataSet data)
+    {
+        this.data = data;
         initComponents();
+        debounce = new Timer(DEFAULT_DEBOUNCE_DELAY, (ActionEvent e) -> applyPendingChanges());
+        debounce.setRepeats(false);
         List<Parameter> parameters = parameterized.getParameters();
         gridLayout = new GridLayout(parameters.size(), 1);
         jPanelParameters.setLayout(gridLayout);
@@ -81,28 +126,25 @@ public class ParameterPanel extends javax.swing.JPanel
                     }
                     
                     public void change(DocumentEvent e)
+                    {
+                        schedule(intParam, this::apply);
+                    }
+                    
+                    private boolean apply()
                     {
                         try
                         {
                             int newVal = Integer.parseInt(textField.getText().trim());
                             boolean good = intParam.setValue(newVal);
-                            if(good)
-                            {
-                                checkBox.setSelected(true);
-                            }
-                            else
-                                badInput();
+                            checkBox.setSelected(good);
+                            return good;
                         }
                         catch(Exception ex)
                         {
-                            badInput();
+                            checkBox.setSelected(false);
+                            return false;
                         }
                     }
-                    
-                    private void badInput()
-                    {
-                        checkBox.setSelected(false);
-                    }
                 });
                 
                 subPanel.add(textField, BorderLayout.CENTER);
@@ -139,28 +181,25 @@ public class ParameterPanel extends javax.swing.JPanel
                     }
                     
                     public void change(DocumentEvent e)
+                    {
+                        schedule(doubleParam, this::apply);
+                    }
+                    
+                    private boolean apply()
                     {
                         try
                         {
                             double newVal = Double.parseDouble(textField.getText().trim());
                             boolean good = doubleParam.setValue(newVal);
-                            if(good)
-                            {
-                                checkBox.setSelected(true);
-                            }
-                            else
-                                badInput();
+                            checkBox.setSelected(good);
+                            return good;
                         }
                         catch(Exception ex)
                         {
-                            badInput();
+                            checkBox.setSelected(false);
+                            return false;
                         }
                     }
-                    
-                    private void badInput()
-                    {
-                        checkBox.setSelected(false);
-                    }
                 });
                 
                 subPanel.add(textField, BorderLayout.CENTER);
@@ -176,7 +215,7 @@ public class ParameterPanel extends javax.swing.JPanel
                 checkBox.setEnabled(true);
                 checkBox.addItemListener((ItemEvent e) ->
                 {
-                    boolParam.setValue(checkBox.isSelected());
+                    schedule(boolParam, () -> boolParam.setValue(checkBox.isSelected()));
                 });
                 
                 
@@ -191,7 +230,7 @@ public class ParameterPanel extends javax.swing.JPanel
                 comboBox.setSelectedItem(objParam.getObject());
                 comboBox.addActionListener((ActionEvent e) ->
                 {
-                    objParam.setObject(comboBox.getSelectedItem());
+                    schedule(objParam, () -> objParam.setObject(comboBox.getSelectedItem()));
                 });
                 List options = objParam.parameterOptions();
                 for(int i = 0; i < options.size(); i++)
@@ -204,20 +243,133 @@ public class ParameterPanel extends javax.swing.JPanel
             {
                 final MetricParameter metricParam = (MetricParameter) param;
                 
-                final JComboBox comboBox = new JComboBox(distanceMetrics);
-                for(int i = 0; i < distanceMetrics.length; i++)
-                    if(distanceMetrics[i].toString().equals(metricParam.getMetric().toString()))
+                final List<DistanceMetric> metrics = MetricRegistry.getPrototypes();
+                final JComboBox comboBox = new JComboBox(metrics.toArray());
+                for(int i = 0; i < metrics.size(); i++)
+                    if(metrics.get(i).toString().equals(metricParam.getMetric().toString()))
                         comboBox.setSelectedIndex(i);
+                
+                final JProgressBar training = new JProgressBar();
+                training.setIndeterminate(true);
+                training.setStringPainted(true);
+                training.setVisible(false);
                 comboBox.addActionListener((ActionEvent e) ->
                 {
-                    metricParam.setMetric(distanceMetrics[comboBox.getSelectedIndex()].clone());
+                    selectMetric(metricParam, (DistanceMetric) comboBox.getSelectedItem(), comboBox, training);
                 });
                 subPanel.add(comboBox, BorderLayout.CENTER);
+                subPanel.add(training, BorderLayout.SOUTH);
                 jPanelParameters.add(subPanel);
             }
         }
     }
 
+    /**
+     * Gives a metric to a parameter. A metric that must be trained is
+     * trained in the background first, unless the {@link MetricRegistry}
+     * already has it trained on the {@link #data}.
+     *
+     * @param metricParam the parameter to set
+     * @param prototype the metric chosen
+     * @param comboBox the combo box the metric was chosen from
+     * @param training shown while the metric trains
+     */
+    private void selectMetric(MetricParameter metricParam, DistanceMetric prototype, JComboBox comboBox, JProgressBar training)
+    {
+        DistanceMetric ready = MetricRegistry.getIfReady(prototype, data);
+        if(ready != null)
+        {
+            training.setVisible(false);
+            schedule(metricParam, () -> metricParam.setMetric(ready));
+            return;
+        }
+        
+        training.setString("Training " + prototype + "\u2026");
+        training.setVisible(true);
+        revalidate();
+        MetricRegistry.train(prototype, data).whenComplete((DistanceMetric metric, Throwable ex) ->
+        {
+            SwingUtilities.invokeLater(() ->
+            {
+                //the user has since chosen another metric
+                if(comboBox.getSelectedItem() != prototype)
+                    return;
+                training.setVisible(false);
+                revalidate();
+                //if training failed the model is left to train the metric itself
+                DistanceMetric chosen = ex == null ? metric.clone() : prototype.clone();
+                schedule(metricParam, () -> metricParam.setMetric(chosen));
+            });
+        });
+    }
+    
+    /**
+     * Queues an edit of a parameter, replacing any earlier edit of the same
+     * parameter that has not been applied yet, and restarts the debounce
+     * timer. 
+     */
+    private void schedule(Parameter param, BooleanSupplier edit)
+    {
+        pendingEdits.put(param, edit);
+        debounce.restart();
+    }
+    
+    /**
+     * Applies every edit made since the last time edits were applied, without
+     * waiting for the debounce delay. If any parameter accepted its new
+     * value, the {@link #addChangeListener(javax.swing.event.ChangeListener) 
+     * change listeners} are notified. This must be called on the Swing event
+     * dispatch thread.
+     */
+    public void applyPendingChanges()
+    {
+        debounce.stop();
+        if(pendingEdits.isEmpty())
+            return;
+        boolean changed = false;
+        for(BooleanSupplier edit : pendingEdits.values())
+            changed |= edit.getAsBoolean();
+        pendingEdits.clear();
+        if(!changed)
+            return;
+        ChangeEvent event = new ChangeEvent(this);
+        for(ChangeListener listener : listenerList.getListeners(ChangeListener.class))
+            listener.stateChanged(event);
+    }
+    
+    /**
+     * Sets how long, in milliseconds, the user must stop editing before the
+     * edits are applied to the parameters. This keeps a value from being
+     * parsed, applied, and acted on for every keystroke. 
+     * @param delay the debounce delay in milliseconds
+     */
+    public void setDebounceDelay(int delay)
+    {
+        if(delay < 0)
+            throw new IllegalArgumentException("delay must be non-negative, not " + delay);
+        debounce.setInitialDelay(delay);
+    }
+
+    public int getDebounceDelay()
+    {
+        return debounce.getInitialDelay();
+    }
+    
+    /**
+     * Adds a listener that is notified on the Swing event dispatch thread
+     * every time edits have been applied to the parameters
+     * @param listener the listener to add
+     */
+    public void addChangeListener(ChangeListener listener)
+    {
+        listenerList.add(ChangeListener.class, listener);
+    }
+    
+    public void removeChangeListener(ChangeListener listener)
+    {
+        listenerList.remove(ChangeListener.class, listener);
+    }
+
     /**
      * Obtains the jButton for the OK button, so that custom behavior may be 
      * added, or the button hidden if desired. 
@@ -247,6 +399,105 @@ public class ParameterPanel extends javax.swing.JPanel
         });
         jd.pack();
         jd.setVisible(true);
+        //the dialog may have been closed before the last edits were applied
+        pp.applyPendingChanges();
+    }
+    
+    /**
+     * Shows a non-modal dialog to alter the parameters of a classifier. Each
+     * time the user stops editing, a copy of the classifier is trained on a
+     * background thread and given to the plot once it is ready. The rest of
+     * the application stays responsive while the user tunes the classifier.
+     *
+     * @param owner the owner window of the dialog
+     * @param title the title for the dialog
+     * @param classifier the classifier whose parameters are altered, which
+     * must implement {@link Parameterized}
+     * @param data the data set to train on
+     * @param plot the plot to show each newly trained classifier
+     * @return the dialog, which is already showing
+     */
+    public static JDialog showLiveParameterDiag(Window owner, String title, Classifier classifier, ClassificationDataSet data, ClassificationPlot<?, ?> plot)
+    {
+        Parameterized parameterized = parameterized(classifier);
+        Retrainer<Classifier> retrainer = Retrainer.of(classifier, data, (Classifier trained) ->
+        {
+            Platform.runLater(() -> plot.setClassifier(trained));
+        });
+        return showLiveParameterDiag(owner, title, parameterized, data, retrainer);
+    }
+    
+    /**
+     * Shows a non-modal dialog to alter the parameters of a regressor. Each
+     * time the user stops editing, a copy of the regressor is trained on a
+     * background thread and given to the plot once it is ready. 
+     *
+     * @param owner the owner window of the dialog
+     * @param title the title for the dialog
+     * @param regressor the regressor whose parameters are altered, which
+     * must implement {@link Parameterized}
+     * @param data the data set to train on
+     * @param plot the plot to show each newly trained regressor
+     * @return the dialog, which is already showing
+     */
+    public static JDialog showLiveParameterDiag(Window owner, String title, Regressor regressor, RegressionDataSet data, RegressionPlot<?, ?> plot)
+    {
+        Parameterized parameterized = parameterized(regressor);
+        Retrainer<Regressor> retrainer = Retrainer.of(regressor, data, (Regressor trained) ->
+        {
+            Platform.runLater(() -> plot.setRegressor(trained));
+        });
+        return showLiveParameterDiag(owner, title, parameterized, data, retrainer);
+    }
+    
+    /**
+     * 
+     * @param model a model that should have parameters
+     * @return the model as a {@link Parameterized} object
+     * @throws IllegalArgumentException if the model has no parameters
+     */
+    static Parameterized parameterized(Object model)
+    {
+        if(!(model instanceof Parameterized))
+            throw new IllegalArgumentException(model.getClass().getSimpleName() + " does not have parameters to alter");
+        return (Parameterized) model;
+    }
+    
+    /**
+     * Shows a non-modal dialog to alter the parameters of a model, which asks
+     * the retrainer for a new model every time edits are applied. 
+     *
+     * @param owner the owner window of the dialog
+     * @param title the title for the dialog
+     * @param parameterized the model whose parameters are altered, which
+     * should be the prototype of the retrainer
+     * @param data the data set the model is trained on, which distance
+     * metrics are trained on when chosen. May be {@code null}.
+     * @param retrainer the retrainer to ask for new models
+     * @return the dialog, which is already showing
+     */
+    public static JDialog showLiveParameterDiag(Window owner, String title, Parameterized parameterized, DataSet data, Retrainer<?> retrainer)
+    {
+        final ParameterPanel pp = new ParameterPanel(parameterized, data);
+        pp.addChangeListener((ChangeEvent e) -> retrainer.retrain());
+        final JDialog jd = new JDialog(owner, title, Dialog.ModalityType.MODELESS);
+        jd.setContentPane(pp);
+        pp.getjButtonOk().addActionListener((ActionEvent e) ->
+        {
+            pp.applyPendingChanges();
+            jd.setVisible(false);
+        });
+        jd.addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                pp.applyPendingChanges();
+            }
+        });
+        jd.pack();
+        jd.setVisible(true);
+        return jd;
     }
     
     /**
@@ -0,0 +1,490 @@
+package com.edwardraff.jsatfx.swing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import jsat.DataSet;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.ClassificationModelEvaluation;
+import jsat.classifiers.Classifier;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.parameters.*;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.RegressionModelEvaluation;
+import jsat.regression.Regressor;
+
+/**
+ * ParameterSweep trains copies of a model over a grid of values for one or
+ * two of its parameters, and records the cross validation error and training
+ * time of each. The parameters are found the same way {@link ParameterPanel}
+ * finds them. Copies are evaluated on a pool of worker threads, and each
+ * result is handed back on the Swing event dispatch thread as soon as it is
+ * done, so a view of the sweep can fill in progressively. <br>
+ * Only the scores of each copy are kept. The number of copies trained at the
+ * same time is limited so that their estimated memory use stays within a
+ * budget.
+ *
+ * @author Edward Raff
+ */
+public class ParameterSweep
+{
+    /**
+     * A parameter to sweep, and the values to try for it
+     */
+    public static class Axis
+    {
+        private final String name;
+        private final String label;
+        private final List<Object> values;
+
+        private Axis(Parameter param, List<?> values)
+        {
+            if(values.isEmpty())
+                throw new IllegalArgumentException("An axis needs at least one value");
+            this.name = param.getASCIIName();
+            this.label = param.getName();
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+        }
+
+        /**
+         *
+         * @param param the parameter to sweep
+         * @param from the first value
+         * @param to the last value
+         * @param steps the number of values, spaced evenly from {@code from}
+         * to {@code to}. Duplicate values after rounding are dropped.
+         * @return an axis over the integer values
+         */
+        public static Axis range(IntParameter param, int from, int to, int steps)
+        {
+            List<Integer> values = new ArrayList<>();
+            for(int i = 0; i < steps; i++)
+            {
+                int v = (int) Math.round(from+(to-from)*(steps == 1 ? 0.0 : i/(double) (steps-1)));
+                if(values.isEmpty() || values.get(values.size()-1) != v)
+                    values.add(v);
+            }
+            return new Axis(param, values);
+        }
+
+        /**
+         *
+         * @param param the parameter to sweep
+         * @param from the first value
+         * @param to the last value
+         * @param steps the number of values
+         * @param log {@code true} to space the values evenly on a log scale,
+         * which requires both end points to be positive
+         * @return an axis over the values
+         */
+        public static Axis range(DoubleParameter param, double from, double to, int steps, boolean log)
+        {
+            if(log && (from <= 0 || to <= 0))
+                throw new IllegalArgumentException("A log scale needs positive end points");
+            List<Double> values = new ArrayList<>();
+            for(int i = 0; i < steps; i++)
+            {
+                double t = steps == 1 ? 0.0 : i/(double) (steps-1);
+                values.add(log ? Math.exp(Math.log(from)+(Math.log(to)-Math.log(from))*t) : from+(to-from)*t);
+            }
+            return new Axis(param, values);
+        }
+
+        /**
+         * Creates an axis over every value a parameter with a fixed set of
+         * options can take: both values of a {@link BooleanParameter}, every
+         * option of an {@link ObjectParameter}, and the distance metrics of the
+         * {@link MetricRegistry} for a {@link MetricParameter}.
+         *
+         * @param param the parameter to sweep
+         * @return an axis over every option of the parameter
+         */
+        public static Axis options(Parameter param)
+        {
+            if(param instanceof BooleanParameter)
+                return new Axis(param, Arrays.asList(false, true));
+            else if(param instanceof ObjectParameter)
+                return new Axis(param, ((ObjectParameter) param).parameterOptions());
+            else if(param instanceof MetricParameter)
+                return new Axis(param, MetricRegistry.getPrototypes());
+            throw new IllegalArgumentException(param.getName() + " does not have a fixed set of options");
+        }
+
+        /**
+         *
+         * @return the display name of the parameter
+         */
+        public String getLabel()
+        {
+            return label;
+        }
+
+        public List<Object> getValues()
+        {
+            return values;
+        }
+
+        public int size()
+        {
+            return values.size();
+        }
+    }
+
+    /**
+     * The scores of one copy of the model
+     */
+    public static class Result
+    {
+        /**
+         * The index of the value used from the first axis
+         */
+        public final int i;
+        /**
+         * The index of the value used from the second axis, or 0 if there is
+         * only one axis
+         */
+        public final int j;
+        /**
+         * The cross validation error, which is the error rate for a
+         * classifier and the mean error for a regressor. {@link Double#NaN}
+         * if the model would not accept the parameter values or failed to
+         * train.
+         */
+        public final double error;
+        /**
+         * The total training time over all folds, in milliseconds
+         */
+        public final long trainingTime;
+
+        Result(int i, int j, double error, long trainingTime)
+        {
+            this.i = i;
+            this.j = j;
+            this.error = error;
+            this.trainingTime = trainingTime;
+        }
+    }
+
+    /**
+     * Trains and scores one copy of the model, returning its error and
+     * training time
+     */
+    private interface Evaluation
+    {
+        double[] evaluate(Object model, int folds);
+    }
+
+    private final Supplier<Object> copier;
+    private final Evaluation evaluation;
+    private final DataSet<?> data;
+    private final Axis first;
+    private final Axis second;
+    private int folds = 5;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long memoryBudget = Runtime.getRuntime().maxMemory()/2;
+    /**
+     * The estimated size of one trained copy of the model, or 0 to assume it
+     * is as large as the data set
+     */
+    private long modelMemory = 0;
+    /**
+     * A rough size in bytes of the objects each row of a data set is held
+     * in, besides its values
+     */
+    private static final long ROW_OVERHEAD = 64;
+    private ExecutorService workers;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private ParameterSweep(Supplier<Object> copier, Evaluation evaluation, DataSet<?> data, Axis first, Axis second)
+    {
+        this.copier = copier;
+        this.evaluation = evaluation;
+        this.data = data;
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     *
+     * @param prototype the classifier to copy, which must implement
+     * {@link Parameterized}
+     * @param data the data set to cross validate on
+     * @param first the first parameter to sweep
+     * @param second the second parameter to sweep, or {@code null} to sweep
+     * only one
+     * @return a sweep of the classifier, which has not been started
+     */
+    public static ParameterSweep of(Classifier prototype, ClassificationDataSet data, Axis first, Axis second)
+    {
+        ParameterPanel.parameterized(prototype);
+        return new ParameterSweep(prototype::clone, (Object model, int folds) ->
+        {
+            ClassificationModelEvaluation cme = new ClassificationModelEvaluation((Classifier) model, data);
+            cme.evaluateCrossValidation(folds);
+            return new double[]{cme.getErrorRate(), cme.getTotalTrainingTime()};
+        }, data, first, second);
+    }
+
+    /**
+     *
+     * @param prototype the regressor to copy, which must implement
+     * {@link Parameterized}
+     * @param data the data set to cross validate on
+     * @param first the first parameter to sweep
+     * @param second the second parameter to sweep, or {@code null} to sweep
+     * only one
+     * @return a sweep of the regressor, which has not been started
+     */
+    public static ParameterSweep of(Regressor prototype, RegressionDataSet data, Axis first, Axis second)
+    {
+        ParameterPanel.parameterized(prototype);
+        return new ParameterSweep(prototype::clone, (Object model, int folds) ->
+        {
+            RegressionModelEvaluation rme = new RegressionModelEvaluation((Regressor) model, data);
+            rme.evaluateCrossValidation(folds);
+            return new double[]{rme.getMeanError(), rme.getTotalTrainingTime()};
+        }, data, first, second);
+    }
+
+    public Axis getFirst()
+    {
+        return first;
+    }
+
+    /**
+     *
+     * @return the second axis, or {@code null} if only one parameter is swept
+     */
+    public Axis getSecond()
+    {
+        return second;
+    }
+
+    public void setFolds(int folds)
+    {
+        if(folds < 2)
+            throw new IllegalArgumentException("Cross validation needs at least 2 folds, not " + folds);
+        this.folds = folds;
+    }
+
+    public int getFolds()
+    {
+        return folds;
+    }
+
+    public void setThreads(int threads)
+    {
+        if(threads < 1)
+            throw new IllegalArgumentException("threads must be positive, not " + threads);
+        this.threads = threads;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the most memory the copies being trained at the same time may be
+     * estimated to use. The budget only limits how many copies are trained at
+     * once, and the estimate it is compared against is a heuristic, not a
+     * measurement. Each copy is counted as the training and testing sets
+     * cross validation makes for a fold, each about the size of the data set
+     * with a fixed overhead per row, plus the
+     * {@link #setModelMemory(long) size of the model}. At least one copy is
+     * always trained, whatever the budget.
+     *
+     * @param bytes the memory budget in bytes
+     */
+    public void setMemoryBudget(long bytes)
+    {
+        if(bytes <= 0)
+            throw new IllegalArgumentException("The memory budget must be positive, not " + bytes);
+        this.memoryBudget = bytes;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the estimated size of one trained copy of the model, for the
+     * {@link #setMemoryBudget(long) memory budget}. By default a model is
+     * assumed to be as large as the data set, as models like a nearest
+     * neighbor search or a kernel machine keep much of their training data.
+     * Models that are known to be far larger or smaller should be given an
+     * estimate.
+     *
+     * @param bytes the estimated size of one model in bytes, or 0 to assume
+     * it is as large as the data set
+     */
+    public void setModelMemory(long bytes)
+    {
+        if(bytes < 0)
+            throw new IllegalArgumentException("The model memory must be non-negative, not " + bytes);
+        this.modelMemory = bytes;
+    }
+
+    public long getModelMemory()
+    {
+        return modelMemory;
+    }
+
+    /**
+     *
+     * @return the number of copies of the model the sweep trains
+     */
+    public int size()
+    {
+        return first.size()*(second == null ? 1 : second.size());
+    }
+
+    /**
+     *
+     * @return the estimated number of bytes used while training one copy
+     */
+    long bytesPerJob()
+    {
+        long dataBytes = data.getSampleSize()*(Math.max(1, data.getNumFeatures())*8L+ROW_OVERHEAD);
+        //the training and testing sets of a fold, and the model trained on them
+        return 2*dataBytes + (modelMemory > 0 ? modelMemory : dataBytes);
+    }
+
+    /**
+     *
+     * @return the number of copies that may be trained at the same time,
+     * which is the number of worker threads used
+     */
+    int concurrency()
+    {
+        return (int) Math.max(1, Math.min(threads, memoryBudget/Math.max(1, bytesPerJob())));
+    }
+
+    /**
+     * Starts training every copy in the background. This must be called on
+     * the Swing event dispatch thread, and only once.
+     *
+     * @param onResult given the result of each copy as it finishes, on the
+     * Swing event dispatch thread
+     * @param onDone run on the Swing event dispatch thread once every copy is
+     * done, unless the sweep was cancelled. May be {@code null}.
+     */
+    public void start(Consumer<Result> onResult, Runnable onDone)
+    {
+        if(workers != null)
+            throw new IllegalStateException("The sweep has already been started");
+        final int parallel = concurrency();
+        workers = Executors.newFixedThreadPool(parallel, (Runnable r) ->
+        {
+            Thread t = new Thread(r, "jsatfx-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        final AtomicInteger remaining = new AtomicInteger(size());
+        final int columns = second == null ? 1 : second.size();
+        for(int i = 0; i < first.size(); i++)
+            for(int j = 0; j < columns; j++)
+            {
+                final int fi = i, fj = j;
+                workers.submit(() ->
+                {
+                    Result result = null;
+                    try
+                    {
+                        if(cancelled.get())
+                            return;
+                        Object model = configure(fi, fj);
+                        double[] scores = model == null ? null : evaluation.evaluate(model, folds);
+                        if(scores != null)
+                            result = new Result(fi, fj, scores[0], (long) scores[1]);
+                    }
+                    catch(Throwable ex)
+                    {
+                        //including an OutOfMemoryError, which only fails this copy
+                    }
+                    finally
+                    {
+                        //every copy is counted, so that onDone runs even if one failed
+                        if(!cancelled.get())
+                            post(result == null ? new Result(fi, fj, Double.NaN, 0) : result,
+                                    remaining.decrementAndGet() == 0, onResult, onDone);
+                    }
+                });
+            }
+        workers.shutdown();
+    }
+
+    private void post(Result result, boolean last, Consumer<Result> onResult, Runnable onDone)
+    {
+        SwingUtilities.invokeLater(() ->
+        {
+            if(cancelled.get())
+                return;
+            onResult.accept(result);
+            if(last && onDone != null)
+                onDone.run();
+        });
+    }
+
+    /**
+     * Copies the model and sets the parameter values of a cell of the grid
+     * @return the configured copy, or {@code null} if it did not accept the
+     * values
+     */
+    private Object configure(int i, int j)
+    {
+        Object model = copier.get();
+        Parameterized p = (Parameterized) model;
+        if(!setValue(p.getParameter(first.name), first.values.get(i)))
+            return null;
+        if(second != null && !setValue(p.getParameter(second.name), second.values.get(j)))
+            return null;
+        return model;
+    }
+
+    /**
+     * Sets the value of a parameter of any of the types
+     * {@link ParameterPanel} can edit
+     * @return {@code true} if the parameter accepted the value
+     */
+    @SuppressWarnings("unchecked")
+    static boolean setValue(Parameter param, Object value)
+    {
+        if(param instanceof IntParameter)
+            return ((IntParameter) param).setValue((Integer) value);
+        else if(param instanceof DoubleParameter)
+            return ((DoubleParameter) param).setValue((Double) value);
+        else if(param instanceof BooleanParameter)
+            return ((BooleanParameter) param).setValue((Boolean) value);
+        else if(param instanceof ObjectParameter)
+            return ((ObjectParameter) param).setObject(value);
+        else if(param instanceof MetricParameter)
+            return ((MetricParameter) param).setMetric(((DistanceMetric) value).clone());
+        return false;
+    }
+
+    /**
+     * Stops the sweep. Copies that are training are interrupted, and no more
+     * results are delivered.
+     */
+    public void cancel()
+    {
+        cancelled.set(true);
+        if(workers != null)
+            workers.shutdownNow();
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled.get();
+    }
+}
@@ -0,0 +1,537 @@
+package com.edwardraff.jsatfx.swing;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.RenderingHints;
+import java.awt.Window;
+import java.awt.event.*;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import javax.swing.*;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.parameters.*;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.Regressor;
+
+/**
+ * ParameterSweepPanel lets the user pick ranges for one or two parameters of
+ * a model and runs a {@link ParameterSweep} over them. The cross validation
+ * error of each setting is shown as a heatmap when two parameters are swept,
+ * or as a line chart for one, which fills in as the copies of the model
+ * finish training.
+ *
+ * @author Edward Raff
+ */
+public class ParameterSweepPanel extends JPanel
+{
+    private static final long serialVersionUID = 4021586637197404513L;
+    private static final String NONE = "(none)";
+
+    private final BiFunction<ParameterSweep.Axis, ParameterSweep.Axis, ParameterSweep> sweeps;
+    private final List<Parameter> parameters = new ArrayList<>();
+    private final AxisChooser firstChooser;
+    private final AxisChooser secondChooser;
+    private final JSpinner foldsSpinner = new JSpinner(new SpinnerNumberModel(5, 2, 100, 1));
+    private final JButton startButton = new JButton("Start");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JProgressBar progress = new JProgressBar();
+    private final SweepView view = new SweepView();
+    private ParameterSweep sweep;
+    private long memoryBudget = Runtime.getRuntime().maxMemory()/2;
+    private long modelMemory = 0;
+
+    /**
+     *
+     * @param classifier the classifier to sweep the parameters of, which must
+     * implement {@link Parameterized}. It is copied, and is never trained.
+     * @param data the data set to cross validate on
+     */
+    public ParameterSweepPanel(Classifier classifier, ClassificationDataSet data)
+    {
+        this(ParameterPanel.parameterized(classifier), (ParameterSweep.Axis a, ParameterSweep.Axis b) -> ParameterSweep.of(classifier, data, a, b));
+    }
+
+    /**
+     *
+     * @param regressor the regressor to sweep the parameters of, which must
+     * implement {@link Parameterized}. It is copied, and is never trained.
+     * @param data the data set to cross validate on
+     */
+    public ParameterSweepPanel(Regressor regressor, RegressionDataSet data)
+    {
+        this(ParameterPanel.parameterized(regressor), (ParameterSweep.Axis a, ParameterSweep.Axis b) -> ParameterSweep.of(regressor, data, a, b));
+    }
+
+    private ParameterSweepPanel(Parameterized parameterized, BiFunction<ParameterSweep.Axis, ParameterSweep.Axis, ParameterSweep> sweeps)
+    {
+        super(new BorderLayout());
+        this.sweeps = sweeps;
+        for(Parameter param : parameterized.getParameters())
+            if(param instanceof IntParameter || param instanceof DoubleParameter || param instanceof BooleanParameter
+                    || param instanceof ObjectParameter || param instanceof MetricParameter)
+                parameters.add(param);
+        if(parameters.isEmpty())
+            throw new IllegalArgumentException("The model has no parameters that can be swept");
+
+        firstChooser = new AxisChooser("First parameter", false);
+        secondChooser = new AxisChooser("Second parameter", true);
+        JPanel choosers = new JPanel(new GridLayout(2, 1));
+        choosers.add(firstChooser);
+        choosers.add(secondChooser);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Folds"));
+        controls.add(foldsSpinner);
+        controls.add(startButton);
+        controls.add(cancelButton);
+        controls.add(progress);
+        cancelButton.setEnabled(false);
+        progress.setStringPainted(true);
+        startButton.addActionListener((ActionEvent e) -> start());
+        cancelButton.addActionListener((ActionEvent e) -> cancel());
+
+        JPanel north = new JPanel(new BorderLayout());
+        north.add(choosers, BorderLayout.CENTER);
+        north.add(controls, BorderLayout.SOUTH);
+        add(north, BorderLayout.NORTH);
+        add(view, BorderLayout.CENTER);
+    }
+
+    /**
+     * Sets the memory budget of the sweeps this panel starts
+     * @param bytes the memory budget in bytes
+     * @see ParameterSweep#setMemoryBudget(long)
+     */
+    public void setMemoryBudget(long bytes)
+    {
+        if(bytes <= 0)
+            throw new IllegalArgumentException("The memory budget must be positive, not " + bytes);
+        this.memoryBudget = bytes;
+    }
+
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the estimated size of one trained model for the sweeps this panel
+     * starts
+     * @param bytes the estimated size of one model in bytes, or 0 to assume
+     * it is as large as the data set
+     * @see ParameterSweep#setModelMemory(long)
+     */
+    public void setModelMemory(long bytes)
+    {
+        if(bytes < 0)
+            throw new IllegalArgumentException("The model memory must be non-negative, not " + bytes);
+        this.modelMemory = bytes;
+    }
+
+    public long getModelMemory()
+    {
+        return modelMemory;
+    }
+
+    /**
+     * Starts a sweep over the ranges currently entered, cancelling any sweep
+     * in progress
+     */
+    public void start()
+    {
+        ParameterSweep.Axis first, second;
+        try
+        {
+            first = firstChooser.toAxis();
+            second = secondChooser.toAxis();
+        }
+        catch(IllegalArgumentException ex)
+        {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Invalid range", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        cancel();
+        sweep = sweeps.apply(first, second);
+        sweep.setFolds((Integer) foldsSpinner.getValue());
+        sweep.setMemoryBudget(memoryBudget);
+        sweep.setModelMemory(modelMemory);
+        view.reset(sweep);
+        progress.setMaximum(sweep.size());
+        progress.setValue(0);
+        startButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        final ParameterSweep running = sweep;
+        running.start((ParameterSweep.Result r) ->
+        {
+            view.add(r);
+            progress.setValue(progress.getValue()+1);
+        }, () ->
+        {
+            if(running == sweep)
+                finished();
+        });
+    }
+
+    /**
+     * Stops the sweep in progress, keeping the results shown so far
+     */
+    public void cancel()
+    {
+        if(sweep != null)
+            sweep.cancel();
+        finished();
+    }
+
+    private void finished()
+    {
+        startButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+    }
+
+    /**
+     * Shows a non-modal dialog to sweep the parameters of a classifier
+     * @param owner the owner window of the dialog
+     * @param title the title for the dialog
+     * @param classifier the classifier to sweep the parameters of
+     * @param data the data set to cross validate on
+     * @return the dialog, which is already showing
+     */
+    public static JDialog showSweepDiag(Window owner, String title, Classifier classifier, ClassificationDataSet data)
+    {
+        return showSweepDiag(owner, title, new ParameterSweepPanel(classifier, data));
+    }
+
+    /**
+     * Shows a non-modal dialog to sweep the parameters of a regressor
+     * @param owner the owner window of the dialog
+     * @param title the title for the dialog
+     * @param regressor the regressor to sweep the parameters of
+     * @param data the data set to cross validate on
+     * @return the dialog, which is already showing
+     */
+    public static JDialog showSweepDiag(Window owner, String title, Regressor regressor, RegressionDataSet data)
+    {
+        return showSweepDiag(owner, title, new ParameterSweepPanel(regressor, data));
+    }
+
+    private static JDialog showSweepDiag(Window owner, String title, final ParameterSweepPanel panel)
+    {
+        final JDialog jd = new JDialog(owner, title, JDialog.ModalityType.MODELESS);
+        jd.setContentPane(panel);
+        jd.addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                panel.cancel();
+            }
+        });
+        jd.pack();
+        jd.setVisible(true);
+        return jd;
+    }
+
+    /**
+     * The controls to pick a parameter and the range of values to sweep it
+     * over
+     */
+    private class AxisChooser extends JPanel
+    {
+        private static final long serialVersionUID = -2165104883170254215L;
+        private final JComboBox<Object> parameterBox;
+        private final JTextField fromField = new JTextField(6);
+        private final JTextField toField = new JTextField(6);
+        private final JSpinner stepsSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 100, 1));
+        private final JCheckBox logBox = new JCheckBox("Log scale");
+
+        AxisChooser(String title, boolean optional)
+        {
+            super(new FlowLayout(FlowLayout.LEFT));
+            setBorder(BorderFactory.createTitledBorder(title));
+            List<Object> choices = new ArrayList<>();
+            if(optional)
+                choices.add(NONE);
+            for(Parameter param : parameters)
+                choices.add(param.getName());
+            parameterBox = new JComboBox<>(choices.toArray());
+            parameterBox.addActionListener((ActionEvent e) -> parameterChanged());
+            add(parameterBox);
+            add(new JLabel("From"));
+            add(fromField);
+            add(new JLabel("To"));
+            add(toField);
+            add(new JLabel("Steps"));
+            add(stepsSpinner);
+            add(logBox);
+            parameterChanged();
+        }
+
+        /**
+         *
+         * @return the chosen parameter, or {@code null} for none
+         */
+        private Parameter selected()
+        {
+            int index = parameterBox.getSelectedIndex();
+            if(parameterBox.getItemAt(0) == NONE)
+                index--;
+            return index < 0 ? null : parameters.get(index);
+        }
+
+        /**
+         * Fills in the range around the current value of the newly chosen
+         * parameter, and enables only the controls it can use
+         */
+        private void parameterChanged()
+        {
+            Parameter param = selected();
+            boolean ranged = param instanceof IntParameter || param instanceof DoubleParameter;
+            fromField.setEnabled(ranged);
+            toField.setEnabled(ranged);
+            stepsSpinner.setEnabled(ranged);
+            logBox.setEnabled(param instanceof DoubleParameter);
+            if(param instanceof IntParameter)
+            {
+                int v = ((IntParameter) param).getValue();
+                fromField.setText(Integer.toString(Math.max(1, v/2)));
+                toField.setText(Integer.toString(Math.max(2, v*2)));
+            }
+            else if(param instanceof DoubleParameter)
+            {
+                double v = ((DoubleParameter) param).getValue();
+                boolean positive = v > 0;
+                fromField.setText(Double.toString(positive ? v/10 : v-1));
+                toField.setText(Double.toString(positive ? v*10 : v+1));
+                logBox.setSelected(positive);
+            }
+            else
+            {
+                fromField.setText("");
+                toField.setText("");
+            }
+        }
+
+        /**
+         *
+         * @return the axis entered, or {@code null} if no parameter was chosen
+         * @throws IllegalArgumentException if the range entered is not valid
+         */
+        ParameterSweep.Axis toAxis()
+        {
+            Parameter param = selected();
+            int steps = (Integer) stepsSpinner.getValue();
+            try
+            {
+                if(param == null)
+                    return null;
+                else if(param instanceof IntParameter)
+                    return ParameterSweep.Axis.range((IntParameter) param, Integer.parseInt(fromField.getText().trim()),
+                            Integer.parseInt(toField.getText().trim()), steps);
+                else if(param instanceof DoubleParameter)
+                    return ParameterSweep.Axis.range((DoubleParameter) param, Double.parseDouble(fromField.getText().trim()),
+                            Double.parseDouble(toField.getText().trim()), steps, logBox.isSelected());
+                else
+                    return ParameterSweep.Axis.options(param);
+            }
+            catch(NumberFormatException ex)
+            {
+                throw new IllegalArgumentException("The range of " + param.getName() + " is not a number");
+            }
+        }
+    }
+
+    /**
+     * Draws the results of a sweep as they arrive: a heatmap of the error for
+     * two parameters, or a line chart of it for one
+     */
+    private static class SweepView extends JComponent
+    {
+        private static final long serialVersionUID = -6370591806282154717L;
+        private static final int MARGIN = 60;
+        private static final Color PENDING = new Color(0xEEEEEE);
+        private static final Color FAILED = new Color(0x999999);
+
+        private ParameterSweep sweep;
+        private double[][] errors;
+        private long[][] times;
+        private double minError;
+        private double maxError;
+
+        SweepView()
+        {
+            setPreferredSize(new Dimension(480, 360));
+            setToolTipText("");
+        }
+
+        void reset(ParameterSweep sweep)
+        {
+            this.sweep = sweep;
+            int columns = sweep.getSecond() == null ? 1 : sweep.getSecond().size();
+            errors = new double[sweep.getFirst().size()][columns];
+            times = new long[errors.length][columns];
+            for(double[] row : errors)
+                Arrays.fill(row, Double.NaN);
+            minError = Double.POSITIVE_INFINITY;
+            maxError = Double.NEGATIVE_INFINITY;
+            repaint();
+        }
+
+        void add(ParameterSweep.Result r)
+        {
+            //a failed setting keeps its NaN, but is marked by a time of -1
+            errors[r.i][r.j] = r.error;
+            times[r.i][r.j] = Double.isNaN(r.error) ? -1 : r.trainingTime;
+            if(!Double.isNaN(r.error))
+            {
+                minError = Math.min(minError, r.error);
+                maxError = Math.max(maxError, r.error);
+            }
+            repaint();
+        }
+
+        private boolean heatmap()
+        {
+            return sweep.getSecond() != null;
+        }
+
+        private double cellWidth()
+        {
+            return (getWidth()-2.0*MARGIN)/errors.length;
+        }
+
+        private double cellHeight()
+        {
+            return (getHeight()-2.0*MARGIN)/errors[0].length;
+        }
+
+        /**
+         *
+         * @return the position of an error on the y axis of the line chart
+         */
+        private double errorY(double error)
+        {
+            double span = maxError > minError ? maxError-minError : 1;
+            return getHeight()-MARGIN-(error-minError)/span*(getHeight()-2.0*MARGIN);
+        }
+
+        /**
+         *
+         * @return the color of an error, from blue for the lowest error seen
+         * to red for the highest
+         */
+        private Color errorColor(double error)
+        {
+            double t = maxError > minError ? (error-minError)/(maxError-minError) : 0;
+            return Color.getHSBColor((float) ((1-t)*2/3), 0.8f, 0.9f);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g)
+        {
+            super.paintComponent(g);
+            if(sweep == null)
+                return;
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            double cw = cellWidth(), ch = cellHeight();
+
+            if(heatmap())
+            {
+                for(int i = 0; i < errors.length; i++)
+                    for(int j = 0; j < errors[i].length; j++)
+                    {
+                        if(!Double.isNaN(errors[i][j]))
+                            g2.setColor(errorColor(errors[i][j]));
+                        else
+                            g2.setColor(times[i][j] < 0 ? FAILED : PENDING);
+                        //the first value of the second axis is at the bottom
+                        int x = (int) (MARGIN+i*cw);
+                        int y = (int) (MARGIN+(errors[i].length-1-j)*ch);
+                        g2.fillRect(x, y, (int) (MARGIN+(i+1)*cw)-x, (int) (MARGIN+(errors[i].length-j)*ch)-y);
+                    }
+            }
+            else
+            {
+                Path2D.Double line = new Path2D.Double();
+                boolean started = false;
+                g2.setColor(Color.BLUE);
+                for(int i = 0; i < errors.length; i++)
+                {
+                    if(Double.isNaN(errors[i][0]))
+                        continue;
+                    double x = MARGIN+(i+0.5)*cw, y = errorY(errors[i][0]);
+                    if(started)
+                        line.lineTo(x, y);
+                    else
+                        line.moveTo(x, y);
+                    started = true;
+                    g2.fillOval((int) x-3, (int) y-3, 6, 6);
+                }
+                g2.draw(line);
+                if(minError <= maxError)
+                {
+                    g2.setColor(Color.DARK_GRAY);
+                    g2.drawString(format(maxError), 4, (int) errorY(maxError));
+                    g2.drawString(format(minError), 4, (int) errorY(minError));
+                }
+            }
+
+            g2.setColor(Color.DARK_GRAY);
+            FontMetrics fm = g2.getFontMetrics();
+            List<Object> xValues = sweep.getFirst().getValues();
+            for(int i = 0; i < xValues.size(); i++)
+            {
+                String text = format(xValues.get(i));
+                g2.drawString(text, (int) (MARGIN+(i+0.5)*cw)-fm.stringWidth(text)/2, getHeight()-MARGIN+fm.getHeight());
+            }
+            g2.drawString(sweep.getFirst().getLabel(), MARGIN, getHeight()-MARGIN/4);
+            if(heatmap())
+            {
+                List<Object> yValues = sweep.getSecond().getValues();
+                for(int j = 0; j < yValues.size(); j++)
+                    g2.drawString(format(yValues.get(j)), 4, (int) (MARGIN+(yValues.size()-0.5-j)*ch)+fm.getAscent()/2);
+                g2.drawString(sweep.getSecond().getLabel(), 4, MARGIN/2);
+            }
+            else
+                g2.drawString("Error", 4, MARGIN/2);
+        }
+
+        private static String format(Object value)
+        {
+            if(value instanceof Double)
+                return String.format("%.3g", (Double) value);
+            return String.valueOf(value);
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent event)
+        {
+            if(sweep == null)
+                return null;
+            int i = (int) Math.floor((event.getX()-MARGIN)/cellWidth());
+            int j = heatmap() ? errors[0].length-1-(int) Math.floor((event.getY()-MARGIN)/cellHeight()) : 0;
+            if(i < 0 || i >= errors.length || j < 0 || j >= errors[0].length)
+                return null;
+            String setting = sweep.getFirst().getLabel() + " = " + format(sweep.getFirst().getValues().get(i));
+            if(heatmap())
+                setting += ", " + sweep.getSecond().getLabel() + " = " + format(sweep.getSecond().getValues().get(j));
+            if(times[i][j] < 0)
+                return setting + ": failed";
+            if(Double.isNaN(errors[i][j]))
+                return setting + ": pending";
+            return setting + ": error " + format(errors[i][j]) + ", trained in " + times[i][j] + " ms";
+        }
+    }
+}
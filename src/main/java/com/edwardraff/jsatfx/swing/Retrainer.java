@@ -0,0 +1,138 @@
+package com.edwardraff.jsatfx.swing;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.Regressor;
+
+/**
+ * Retrainer trains a copy of a model on a background thread every time it is
+ * asked to, such as when a {@link ParameterPanel} changes the model's
+ * parameters. Asking again before the last model is done cancels it, and only
+ * the model of the most recent request is ever delivered. The prototype
+ * model is never trained itself, so its parameters may keep changing while a
+ * copy trains.
+ *
+ * @author Edward Raff
+ * @param <M> the type of model trained
+ */
+public class Retrainer<M>
+{
+    private static final ExecutorService TRAINING = Executors.newCachedThreadPool((Runnable r) ->
+    {
+        Thread t = new Thread(r, "jsatfx-retrain");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Supplier<M> snapshot;
+    private final Consumer<M> train;
+    private final Consumer<M> onTrained;
+    private Consumer<Exception> onFailed = (Exception ex) -> {};
+    private Future<?> inFlight;
+    /**
+     * Incremented for every request, so that a cancelled job that could not
+     * be interrupted does not deliver its model
+     */
+    private volatile long generation = 0;
+
+    private Retrainer(Supplier<M> snapshot, Consumer<M> train, Consumer<M> onTrained)
+    {
+        this.snapshot = snapshot;
+        this.train = train;
+        this.onTrained = onTrained;
+    }
+
+    /**
+     *
+     * @param prototype the classifier whose parameters are used
+     * @param data the data set to train on
+     * @param onTrained given each newly trained classifier on the Swing event
+     * dispatch thread
+     * @return a retrainer for the classifier
+     */
+    public static Retrainer<Classifier> of(Classifier prototype, ClassificationDataSet data, Consumer<Classifier> onTrained)
+    {
+        return new Retrainer<>(prototype::clone, (Classifier c) -> c.trainC(data), onTrained);
+    }
+
+    /**
+     *
+     * @param prototype the regressor whose parameters are used
+     * @param data the data set to train on
+     * @param onTrained given each newly trained regressor on the Swing event
+     * dispatch thread
+     * @return a retrainer for the regressor
+     */
+    public static Retrainer<Regressor> of(Regressor prototype, RegressionDataSet data, Consumer<Regressor> onTrained)
+    {
+        return new Retrainer<>(prototype::clone, (Regressor r) -> r.train(data), onTrained);
+    }
+
+    /**
+     *
+     * @param onFailed given the exception of any training run that fails, on
+     * the Swing event dispatch thread
+     */
+    public void setOnFailed(Consumer<Exception> onFailed)
+    {
+        this.onFailed = onFailed;
+    }
+
+    /**
+     * Copies the prototype as it is now, and trains the copy in the
+     * background, cancelling any training still in progress. This should be
+     * called from the thread that changes the prototype's parameters.
+     */
+    public void retrain()
+    {
+        cancel();
+        final long job = generation;
+        final M model = snapshot.get();
+        inFlight = TRAINING.submit(() ->
+        {
+            try
+            {
+                train.accept(model);
+                if(job == generation && !Thread.currentThread().isInterrupted())
+                    SwingUtilities.invokeLater(() ->
+                    {
+                        if(job == generation)
+                            onTrained.accept(model);
+                    });
+            }
+            catch(Exception ex)
+            {
+                if(job == generation)
+                    SwingUtilities.invokeLater(() -> onFailed.accept(ex));
+            }
+        });
+    }
+
+    /**
+     * Cancels the training in progress, if any, so that its model is never
+     * delivered
+     */
+    public void cancel()
+    {
+        generation++;
+        if(inFlight != null)
+            inFlight.cancel(true);
+        inFlight = null;
+    }
+
+    /**
+     *
+     * @return {@code true} if a model is still being trained
+     */
+    public boolean isTraining()
+    {
+        return inFlight != null && !inFlight.isDone();
+    }
+}